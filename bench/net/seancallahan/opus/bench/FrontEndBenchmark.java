@@ -0,0 +1,192 @@
+package net.seancallahan.opus.bench;
+
+import net.seancallahan.opus.compiler.CompilerException;
+import net.seancallahan.opus.compiler.Function;
+import net.seancallahan.opus.compiler.Lexer;
+import net.seancallahan.opus.compiler.SourceFile;
+import net.seancallahan.opus.compiler.TokenBuffer;
+import net.seancallahan.opus.compiler.jvm.ClassFile;
+import net.seancallahan.opus.compiler.parser.Parser;
+import net.seancallahan.opus.compiler.semantics.SemanticAnalysis;
+import net.seancallahan.opus.lang.Class;
+import net.seancallahan.opus.lang.Declaration;
+import net.seancallahan.opus.lang.Method;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark
+{
+    @State(Scope.Benchmark)
+    public static class Input
+    {
+        // larger inputs such as -p input=1m work too, given a heap that holds a few trees that size
+        @Param({"basic", "function", "10k", "100k"})
+        public String input;
+
+        private File file;
+        private byte[] source;
+        private SourceFile sourceFile;
+        private TokenBuffer tokens;
+
+        @Setup
+        public void setup() throws IOException, CompilerException
+        {
+            file = Sources.file(input);
+            source = Files.readAllBytes(file.toPath());
+            sourceFile = new SourceFile(file);
+
+            Lexer lexer = new Lexer(file, source);
+            lexer.lex();
+            tokens = lexer.getTokens();
+        }
+
+        private Parser parse() throws CompilerException
+        {
+            return parse(false);
+        }
+
+        private Parser parse(boolean lazyBodies) throws CompilerException
+        {
+            Parser parser = new Parser(sourceFile, tokens, new net.seancallahan.opus.compiler.Scope(null));
+            parser.setLazyBodies(lazyBodies);
+            parser.parse();
+            return parser;
+        }
+    }
+
+    // analysis attaches methods to their classes, so every invocation needs a tree of its own
+    @State(Scope.Thread)
+    public static class Parsed
+    {
+        private Parser parser;
+
+        @Setup(Level.Invocation)
+        public void setup(Input input) throws CompilerException
+        {
+            parser = input.parse();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Analyzed
+    {
+        private SourceFile sourceFile;
+        private final List<Class> classes = new ArrayList<>();
+        private final List<Function> functions = new ArrayList<>();
+
+        @Setup
+        public void setup(Input input) throws IOException, CompilerException
+        {
+            // parsed as a file of its own, so that its package can find where every function called is declared
+            sourceFile = new SourceFile(input.file);
+            sourceFile.parse();
+
+            for (Declaration declaration : sourceFile.getParser().getDeclarations().values())
+            {
+                if (declaration instanceof Class)
+                {
+                    classes.add((Class) declaration);
+                }
+                else if (declaration instanceof Function && !(declaration instanceof Method))
+                {
+                    functions.add((Function) declaration);
+                }
+            }
+        }
+
+        private ClassFile classFile(ClassFile classFile)
+        {
+            classFile.setPackage(sourceFile.getParser().getPackage());
+            return classFile;
+        }
+    }
+
+    @Benchmark
+    public TokenBuffer lex(Input input) throws Lexer.Error
+    {
+        Lexer lexer = new Lexer(input.file, input.source);
+        lexer.lex();
+        return lexer.getTokens();
+    }
+
+    @Benchmark
+    public Parser parse(Input input) throws CompilerException
+    {
+        return input.parse();
+    }
+
+    @Benchmark
+    public Parser signatures(Input input) throws CompilerException
+    {
+        return input.parse(true);
+    }
+
+    @Benchmark
+    public Parser parseParallel(Input input) throws CompilerException
+    {
+        Parser parser = new Parser(input.sourceFile, input.tokens, new net.seancallahan.opus.compiler.Scope(null));
+        parser.setPool(ForkJoinPool.commonPool());
+        parser.parse();
+        return parser;
+    }
+
+    @Benchmark
+    public Parser analyze(Parsed parsed) throws CompilerException
+    {
+        new SemanticAnalysis(parsed.parser).perform();
+        return parsed.parser;
+    }
+
+    @Benchmark
+    public Parser analyzeParallel(Parsed parsed) throws CompilerException
+    {
+        SemanticAnalysis analysis = new SemanticAnalysis(parsed.parser);
+        analysis.setPool(ForkJoinPool.commonPool());
+        analysis.perform();
+        return parsed.parser;
+    }
+
+    @Benchmark
+    public int write(Input input, Analyzed analyzed) throws IOException, CompilerException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        for (Class clazz : analyzed.classes)
+        {
+            analyzed.classFile(new ClassFile(input.file, clazz)).write(out);
+        }
+        if (!analyzed.functions.isEmpty())
+        {
+            String name = analyzed.sourceFile.getStaticClassName();
+            analyzed.classFile(new ClassFile(input.file, name, SourceFile.STATIC_PACKAGE, analyzed.functions)).write(out);
+        }
+
+        return bytes.size();
+    }
+}
@@ -0,0 +1,67 @@
+package net.seancallahan.opus.bench;
+
+import net.seancallahan.opus.compiler.Lexer;
+import net.seancallahan.opus.compiler.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark
+{
+    @Param({"ascii", "utf8"})
+    public String charset;
+
+    @Param({"1000"})
+    public int functions;
+
+    private final File file = new File("bench.opus");
+    private byte[] source;
+
+    @Setup
+    public void setup()
+    {
+        // the utf8 variant only differs in its identifiers and strings, so the token stream has the same shape
+        boolean ascii = charset.equals("ascii");
+        String name = ascii ? "value" : "gr\u00f6\u00dfe";
+        String text = ascii ? "hello world" : "h\u00e9llo w\u00f6rld \u2713";
+
+        StringBuilder b = new StringBuilder("package bench;\n\n");
+        for (int i = 0; i < functions; i++)
+        {
+            b.append("f").append(i).append(" :: (a s32, b s32) -> s32 {\n");
+            b.append("    ").append(name).append(" := a * b + ").append(i).append(";\n");
+            b.append("    s := \"").append(text).append("\";\n");
+            b.append("    // ").append(text).append('\n');
+            b.append("    return ").append(name).append(";\n");
+            b.append("}\n\n");
+        }
+
+        source = b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public TokenBuffer lex() throws Lexer.Error
+    {
+        Lexer lexer = new Lexer(file, source);
+        lexer.lex();
+        return lexer.getTokens();
+    }
+}
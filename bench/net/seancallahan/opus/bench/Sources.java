@@ -0,0 +1,62 @@
+package net.seancallahan.opus.bench;
+
+import net.seancallahan.opus.tools.corpus.CorpusGenerator;
+import net.seancallahan.opus.tools.corpus.Shape;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public final class Sources
+{
+    private Sources()
+    {
+    }
+
+    // a line count such as 10k or 1m picks a generated file about that long, anything else is a sample in test/
+    public static File file(String input) throws IOException
+    {
+        int lines = lines(input);
+        if (lines < 0)
+        {
+            return new File("test", input + ".opus");
+        }
+
+        Path path = Files.createTempFile("bench" + input + "_", ".opus");
+        path.toFile().deleteOnExit();
+        Files.write(path, generate(lines).getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+
+    public static String generate(int lines)
+    {
+        // NOTE: the default shape, which every pass, code generation included, accepts today
+        return new CorpusGenerator(new Shape()).generateLines("bench", lines);
+    }
+
+    private static int lines(String input)
+    {
+        String digits = input.toLowerCase();
+        int scale = 1;
+        if (digits.endsWith("k"))
+        {
+            scale = 1000;
+        }
+        else if (digits.endsWith("m"))
+        {
+            scale = 1000000;
+        }
+        if (scale != 1)
+        {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+
+        if (digits.isEmpty() || !digits.chars().allMatch(Character::isDigit))
+        {
+            return -1;
+        }
+        return Integer.parseInt(digits) * scale;
+    }
+}
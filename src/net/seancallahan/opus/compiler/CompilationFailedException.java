@@ -0,0 +1,68 @@
+package net.seancallahan.opus.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class CompilationFailedException extends CompilerException
+{
+    // errors without a position sort after the ones that have one
+    public static final Comparator<CompilerException> BY_POSITION = Comparator.comparing(CompilerException::getPosition,
+        Comparator.nullsLast(Comparator.comparingInt(SourceFile.Position::getLine).thenComparingInt(SourceFile.Position::getColumn)));
+
+    private final List<CompilerException> errors;
+
+    public CompilationFailedException(List<? extends CompilerException> errors)
+    {
+        this(flatten(errors));
+    }
+
+    private CompilationFailedException(ArrayList<CompilerException> errors)
+    {
+        super(errors.get(0).getMessage(), errors.get(0).getPosition());
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public List<CompilerException> getErrors()
+    {
+        return errors;
+    }
+
+    @Override
+    public String getMessage()
+    {
+        StringBuilder message = new StringBuilder();
+        for (CompilerException error : errors)
+        {
+            if (message.length() > 0)
+            {
+                message.append('\n');
+            }
+            message.append(error.getMessage());
+        }
+        return message.toString();
+    }
+
+    private static ArrayList<CompilerException> flatten(List<? extends CompilerException> errors)
+    {
+        if (errors.isEmpty())
+        {
+            throw new IllegalArgumentException("no errors to report");
+        }
+
+        ArrayList<CompilerException> flat = new ArrayList<>(errors.size());
+        for (CompilerException error : errors)
+        {
+            if (error instanceof CompilationFailedException)
+            {
+                flat.addAll(((CompilationFailedException) error).getErrors());
+            }
+            else
+            {
+                flat.add(error);
+            }
+        }
+        return flat;
+    }
+}
@@ -1,16 +1,36 @@
 package net.seancallahan.opus.compiler;
 
+import net.seancallahan.opus.compiler.semantics.SemanticAnalysis;
+
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 
 public class Compiler
 {
     private final List<Package> packages = new ArrayList<>();
+    private final Map<String, Package> packagesByName = new ConcurrentHashMap<>();
+
+    private final Executor executor;
 
     public Compiler()
     {
+        this(ForkJoinPool.commonPool());
+    }
 
+    public Compiler(Executor executor)
+    {
+        this.executor = executor;
     }
 
     public List<Package> getPackages()
@@ -18,17 +38,174 @@ public class Compiler
         return packages;
     }
 
+    // the package of that name, made the first time a file of it is parsed
+    public Package getPackage(String name)
+    {
+        return packagesByName.computeIfAbsent(name, Package::new);
+    }
+
     public SourceFile compile(File file, boolean assemble) throws Exception
+    {
+        return compile(List.of(file), assemble).get(0);
+    }
+
+    // every file is parsed first, then each package is analyzed once as a whole, and only then is any code generated
+    public List<SourceFile> compile(List<File> files, boolean assemble) throws Exception
+    {
+        CompilerException[] failures = new CompilerException[files.size()];
+
+        List<Callable<SourceFile>> parses = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++)
+        {
+            int index = i;
+            parses.add(() -> parseFile(files.get(index), failures, index));
+        }
+        List<SourceFile> results = run(parses, new ArrayList<>());
+
+        List<CompilerException> errors = new ArrayList<>();
+        Map<Package, List<SourceFile>> added = new LinkedHashMap<>();
+        Set<Package> broken = new HashSet<>();
+        for (int i = 0; i < results.size(); i++)
+        {
+            SourceFile sourceFile = results.get(i);
+
+            Package pkg = sourceFile.getParser() != null ? sourceFile.getParser().getPackage() : null;
+            if (pkg != null)
+            {
+                // a file with syntax errors still takes part, so that uses of what it does declare resolve
+                addToPackage(sourceFile, pkg);
+                added.computeIfAbsent(pkg, key -> new ArrayList<>()).add(sourceFile);
+            }
+
+            if (failures[i] != null)
+            {
+                errors.add(failures[i]);
+                broken.add(pkg);
+            }
+        }
+
+        for (Map.Entry<Package, List<SourceFile>> entry : added.entrySet())
+        {
+            SemanticAnalysis analysis = new SemanticAnalysis(entry.getKey(), entry.getValue());
+            analysis.setPool(pool());
+            analysis.setCheckTypes(!broken.contains(entry.getKey()));
+            try
+            {
+                analysis.perform();
+            }
+            catch (CompilationFailedException e)
+            {
+                errors.addAll(e.getErrors());
+            }
+            catch (UncheckedCompilerException e)
+            {
+                errors.add(e.getCause());
+            }
+        }
+
+        if (errors.isEmpty() && assemble)
+        {
+            List<Callable<SourceFile>> assembles = new ArrayList<>(results.size());
+            for (SourceFile sourceFile : results)
+            {
+                assembles.add(() ->
+                {
+                    sourceFile.compile();
+                    return sourceFile;
+                });
+            }
+            run(assembles, errors);
+        }
+
+        if (!errors.isEmpty())
+        {
+            throw new CompilationFailedException(errors);
+        }
+
+        return results;
+    }
+
+    // runs the tasks on the executor; errors in the source are collected, anything else stops them all
+    private <T> List<T> run(List<Callable<T>> work, List<CompilerException> errors) throws Exception
+    {
+        List<FutureTask<T>> tasks = new ArrayList<>(work.size());
+        for (Callable<T> callable : work)
+        {
+            FutureTask<T> task = new FutureTask<>(callable);
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        // wait in submission order so the results, and the order errors are reported in, don't depend on scheduling
+        List<T> results = new ArrayList<>(work.size());
+        for (FutureTask<T> task : tasks)
+        {
+            try
+            {
+                results.add(task.get());
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof CompilerException)
+                {
+                    // errors in the source don't stop the other files from being checked
+                    errors.add((CompilerException) e.getCause());
+                    continue;
+                }
+
+                for (FutureTask<T> other : tasks)
+                {
+                    other.cancel(false);
+                }
+
+                if (e.getCause() instanceof Exception)
+                {
+                    throw (Exception) e.getCause();
+                }
+                throw (Error) e.getCause();
+            }
+        }
+
+        return results;
+    }
+
+    private ForkJoinPool pool()
+    {
+        // a fork/join executor can also split large files by function body
+        return executor instanceof ForkJoinPool ? (ForkJoinPool) executor : null;
+    }
+
+    private SourceFile parseFile(File file, CompilerException[] failures, int index) throws Exception
     {
         SourceFile sourceFile = new SourceFile(file);
-        sourceFile.lex();
-        sourceFile.parse();
-        if (assemble)
+        sourceFile.setPool(pool());
+        sourceFile.setCompiler(this);
+        try
+        {
+            // a tree saved from the source as it is now skips lexing and parsing it
+            if (!sourceFile.loadSaved())
+            {
+                sourceFile.parse();
+            }
+        }
+        catch (CompilerException e)
         {
-            sourceFile.compile();
+            // kept apart from the file, which is still needed for the rest of its package to be analyzed
+            failures[index] = e;
         }
 
         return sourceFile;
     }
 
+    private void addToPackage(SourceFile sourceFile, Package pkg)
+    {
+        // NOTE: packages are listed in the order their first file was given, not the order they were first parsed in
+        if (pkg.getFiles().isEmpty())
+        {
+            packages.add(pkg);
+        }
+
+        pkg.getFiles().add(sourceFile);
+    }
+
 }
@@ -17,6 +17,9 @@ public class Function implements Declaration
 
     private final Scope scope;
 
+    private volatile DeferredBody deferred;
+    private RuntimeException bodyError;
+
     public Function(Token name, Scope parent)
     {
         this(name, parent, new Body(parent));
@@ -33,6 +36,8 @@ public class Function implements Declaration
 
     public Function(Function other)
     {
+        other.getBody();
+
         this.name = other.name;
         this.scope = other.scope;
         this.body = other.body;
@@ -62,9 +67,52 @@ public class Function implements Declaration
 
     public Body getBody()
     {
+        if (deferred != null)
+        {
+            parseBody();
+        }
+        if (bodyError != null)
+        {
+            throw bodyError;
+        }
         return body;
     }
 
+    // parses a deferred body now; a failure is kept for getBody() to report, so this never throws
+    public synchronized void parseBody()
+    {
+        DeferredBody pending = deferred;
+        if (pending == null)
+        {
+            return;
+        }
+
+        try
+        {
+            pending.parse(body);
+        }
+        catch (CompilerException e)
+        {
+            // keep reporting the same error rather than parsing into a half filled body again
+            bodyError = new UncheckedCompilerException(e);
+        }
+        catch (RuntimeException e)
+        {
+            bodyError = e;
+        }
+        deferred = null;
+    }
+
+    public void defer(DeferredBody deferred)
+    {
+        this.deferred = deferred;
+    }
+
+    public boolean isBodyParsed()
+    {
+        return deferred == null;
+    }
+
     public Scope getScope()
     {
         return scope;
@@ -75,4 +123,9 @@ public class Function implements Declaration
     {
         return name.getValue();
     }
+
+    public interface DeferredBody
+    {
+        void parse(Body body) throws CompilerException;
+    }
 }
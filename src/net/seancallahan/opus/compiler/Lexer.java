@@ -1,68 +1,243 @@
 package net.seancallahan.opus.compiler;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.PushbackInputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 public class Lexer
 {
     private static final int EOF = -1;
     private static final int TERMINATOR = ';';
 
-    private final PushbackInputStream input;
+    // the furthest a token looks past its own end is one UTF-8 sequence
+    private static final int MAX_LOOKAHEAD = 4;
 
-    private final ArrayList<Token> tokens = new ArrayList<>();
+    private final byte[] source;
+    private int offset;
+    private int start;
 
-    private StringBuilder buffer = new StringBuilder();
+    private final TokenBuffer tokens;
+    private final SymbolTable symbols;
 
-    private final SourceFile.Position position;
+    private boolean done;
 
     private long lastDuration;
 
-    public Lexer(File file) throws IOException, Error
+    public Lexer(File file) throws IOException
     {
-        this.input = new PushbackInputStream(new FileInputStream(file));
-        this.position = new SourceFile.Position(file, 1, 0);
+        this(file, Files.readAllBytes(file.toPath()));
+    }
+
+    public Lexer(File file, byte[] source)
+    {
+        this(source, new TokenBuffer(file, source), new SymbolTable());
+    }
 
-        lex();
+    private Lexer(byte[] source, TokenBuffer tokens, SymbolTable symbols)
+    {
+        this.source = source;
+        this.tokens = tokens;
+        this.symbols = symbols;
     }
 
-    private void lex() throws IOException, Error
+    public void lex() throws Error
     {
         long start = System.nanoTime();
-        boolean eof;
-        do
+        while (!done)
         {
-            eof = next();
-        } while (!eof);
+            done = next();
+        }
         lastDuration = System.nanoTime() - start;
     }
 
+    public boolean advance() throws Error
+    {
+        int size = tokens.size();
+        while (!done && tokens.size() == size)
+        {
+            done = next();
+        }
+        return tokens.size() > size;
+    }
+
+    // lexes the one token that starts at the offset and gives back its index; the lexer is in its initial state at
+    // the start of any token, so it comes out as it would in a pass over the whole file
+    public int lexAt(int offset) throws Error
+    {
+        this.offset = offset;
+        this.done = false;
+
+        int index = tokens.size();
+        if (!advance() || tokens.getStart(index) != offset)
+        {
+            throw new Error("no token starts here", tokens.getLines().getPosition(offset));
+        }
+        return index;
+    }
+
+    // another lexer over the same source, which starts with the token at the offset; it shares nothing that
+    // changes, so it can read part of the file again on another thread
+    public Lexer from(int offset) throws Error
+    {
+        Lexer lexer = new Lexer(source, new TokenBuffer(source, tokens.getLines()), new SymbolTable());
+        lexer.lexAt(offset);
+        return lexer;
+    }
+
+    public Lexer edit(int offset, int removed, String inserted) throws Error
+    {
+        if (!done || tokens.hasDiscarded())
+        {
+            throw new IllegalStateException("can only edit a fully lexed file");
+        }
+        if (offset < 0 || removed < 0 || offset + removed > source.length)
+        {
+            throw new IllegalArgumentException("edit is outside of the source");
+        }
+
+        byte[] text = inserted.getBytes(StandardCharsets.UTF_8);
+        int delta = text.length - removed;
+
+        byte[] edited = new byte[source.length + delta];
+        System.arraycopy(source, 0, edited, 0, offset);
+        System.arraycopy(text, 0, edited, offset, text.length);
+        System.arraycopy(source, offset + removed, edited, offset + text.length, source.length - offset - removed);
+
+        Lexer lexer = new Lexer(edited, new TokenBuffer(edited, tokens.getLines().edit(edited, offset, removed, text)), symbols);
+
+        // comments and strings never span a token boundary, so the lexer is back in its initial
+        // state at the end of any token that could not have looked ahead into the edit
+        int kept = tokens.lastEndingBefore(offset - MAX_LOOKAHEAD) + 1;
+        lexer.tokens.append(tokens, 0, kept, 0);
+        if (kept > 0)
+        {
+            lexer.offset = tokens.getStart(kept - 1) + tokens.getLength(kept - 1);
+        }
+
+        int end = offset + text.length;
+        while (!lexer.done)
+        {
+            int index = lexer.tokens.size();
+            if (!lexer.advance())
+            {
+                continue;
+            }
+
+            int start = lexer.tokens.getStart(index);
+            if (start < end)
+            {
+                continue;
+            }
+
+            // past the edit the source is unchanged, so once a token starts where an old one did the rest matches
+            int match = tokens.indexOfStart(start - delta, kept);
+            if (match >= 0)
+            {
+                lexer.tokens.truncate(index);
+                lexer.tokens.append(tokens, match, tokens.size(), delta);
+                lexer.done = true;
+            }
+        }
+
+        return lexer;
+    }
+
+    public boolean isDone()
+    {
+        return done;
+    }
+
     public long getLastDuration()
     {
         return lastDuration;
     }
 
-    private boolean next() throws IOException, Error
+    private int read()
     {
-        int rune = input.read();
+        if (offset >= source.length)
+        {
+            // still advance so that a following unread() stays balanced
+            offset++;
+            return EOF;
+        }
+        return source[offset++] & 0xFF;
+    }
 
-        position.incrementColumn();
+    private void unread()
+    {
+        offset--;
+    }
 
-        if (rune == EOF)
+    private int decode(int lead) throws Error
+    {
+        int length;
+        int rune;
+
+        if ((lead & 0xE0) == 0xC0)
         {
-            return emit(TokenType.EOF);
+            length = 1;
+            rune = lead & 0x1F;
+        }
+        else if ((lead & 0xF0) == 0xE0)
+        {
+            length = 2;
+            rune = lead & 0x0F;
+        }
+        else if ((lead & 0xF8) == 0xF0)
+        {
+            length = 3;
+            rune = lead & 0x07;
+        }
+        else
+        {
+            throw new Error("invalid UTF-8 encoding", position());
         }
 
-        if (rune == '\n')
+        for (int i = 0; i < length; i++)
         {
-            position.incrementLine();
-            position.setColumn(0);
-            return false;
+            int next = read();
+            if ((next & 0xC0) != 0x80)
+            {
+                throw new Error("invalid UTF-8 encoding", position());
+            }
+            rune = (rune << 6) | (next & 0x3F);
+        }
+
+        if (rune < minimumRune[length] || rune > Character.MAX_CODE_POINT
+                || (rune >= Character.MIN_SURROGATE && rune <= Character.MAX_SURROGATE))
+        {
+            throw new Error("invalid UTF-8 encoding", position());
+        }
+
+        return rune;
+    }
+
+    private boolean next() throws Error
+    {
+        start = offset;
+
+        int rune = read();
+
+        if (rune >= 0x80)
+        {
+            // only identifiers and whitespace may contain non-ASCII code points
+            rune = decode(rune);
+            if (Character.isLetter(rune))
+            {
+                return identifier();
+            }
+            if (Character.isWhitespace(rune))
+            {
+                return false;
+            }
+            throw new Error(String.format("invalid character '%s'", new String(Character.toChars(rune))), position());
+        }
+
+        if (rune == EOF)
+        {
+            return emit(TokenType.EOF);
         }
 
         if (Character.isWhitespace(rune))
@@ -72,12 +247,12 @@ public class Lexer
 
         if (Character.isLetter(rune))
         {
-            return identifier(rune);
+            return identifier();
         }
 
         if ('0' <= rune && rune <= '9')
         {
-            return number(rune);
+            return number();
         }
 
         switch (rune)
@@ -109,7 +284,7 @@ public class Lexer
             case '!':
                 return emit(TokenType.OPERATOR, Operator.NOT);
             case ':':
-                rune = input.read();
+                rune = read();
                 if (rune == ':')
                 {
                     return emit(TokenType.DECLARE_GLOBAL);
@@ -118,17 +293,17 @@ public class Lexer
                 {
                     return emit(TokenType.DEFINE);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.DECLARE);
             case '=':
-                if ((rune = input.read()) == '=')
+                if ((rune = read()) == '=')
                 {
                     return emit(TokenType.OPERATOR, Operator.EQ);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.ASSIGN);
             case '+':
-                rune = input.read();
+                rune = read();
                 if (rune == '+')
                 {
                     return emit(TokenType.OPERATOR_DOUBLE, Operator.ADD);
@@ -137,10 +312,10 @@ public class Lexer
                 {
                     return emit(TokenType.OPERATOR_ASSIGN, Operator.ADD);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.ADD);
             case '-':
-                rune = input.read();
+                rune = read();
                 if (rune == '>')
                 {
                     return emit(TokenType.RETURNS);
@@ -155,13 +330,13 @@ public class Lexer
                 }
                 else if (rune >= '0' && rune <= '9')
                 {
-                    input.unread(rune);
-                    return number('-');
+                    unread();
+                    return number();
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.SUBTRACT);
             case '/':
-                rune = input.read();
+                rune = read();
                 if (rune == '/')
                 {
                     return comment();
@@ -174,18 +349,18 @@ public class Lexer
                 {
                     return commentMulti();
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.DIVIDE);
             case '*':
-                rune = input.read();
+                rune = read();
                 if (rune == '=')
                 {
                     return emit(TokenType.OPERATOR_ASSIGN, Operator.MULTIPLY);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.MULTIPLY);
             case '<':
-                rune = input.read();
+                rune = read();
                 if (rune == '=')
                 {
                     return emit(TokenType.OPERATOR, Operator.LEQ);
@@ -194,10 +369,10 @@ public class Lexer
                 {
                     return emit(TokenType.OPERATOR, Operator.LSHIFT);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.LT);
             case '>':
-                rune = input.read();
+                rune = read();
                 if (rune == '=')
                 {
                     return emit(TokenType.OPERATOR, Operator.GEQ);
@@ -206,32 +381,37 @@ public class Lexer
                 {
                     return emit(TokenType.OPERATOR, Operator.RSHIFT);
                 }
-                input.unread(rune);
+                unread();
                 return emit(TokenType.OPERATOR, Operator.GT);
             case '|':
-                rune = input.read();
+                rune = read();
                 if (rune != '|')
                 {
-                    throw new Error(String.format("invalid character '%c'", (char)rune), position);
+                    throw new Error(String.format("invalid character '%c'", (char)rune), position());
                 }
                 return emit(TokenType.OPERATOR, Operator.OR);
             case '&':
-                rune = input.read();
+                rune = read();
                 if (rune != '&')
                 {
-                    throw new Error(String.format("invalid character '%c'", (char)rune), position);
+                    throw new Error(String.format("invalid character '%c'", (char)rune), position());
                 }
                 return emit(TokenType.OPERATOR, Operator.AND);
             default:
-                throw new Error(String.format("invalid character '%c'", (char)rune), position);
+                throw new Error(String.format("invalid character '%c'", (char)rune), position());
         }
     }
 
-    public List<Token> getTokens()
+    public TokenBuffer getTokens()
     {
         return tokens;
     }
 
+    private SourceFile.Position position()
+    {
+        return tokens.getLines().getPosition(start);
+    }
+
     private boolean emit(TokenType type)
     {
         emit(type, Operator.NONE);
@@ -241,108 +421,193 @@ public class Lexer
 
     private boolean emit(TokenType type, Operator operator)
     {
-        tokens.add(new Token(type, buffer.toString(), SourceFile.Position.copy(this.position), operator));
+        return emit(type, operator, -1);
+    }
 
-        reset();
+    private boolean emit(TokenType type, Operator operator, int symbol)
+    {
+        int end = Math.min(offset, source.length);
+
+        tokens.add(type, operator, start, end - start, symbol);
 
         return type == TokenType.EOF;
     }
 
-    private void reset()
+    private boolean identifier() throws Error
     {
-        if (buffer.length() > 0)
+        while (true)
         {
-            buffer = new StringBuilder();
-        }
-    }
+            int mark = offset;
+            int rune = read();
 
-    private boolean identifier(int first) throws IOException
-    {
-        buffer.append((char)first);
+            if (rune < 0x80)
+            {
+                if (rune == EOF || !identifierPart[rune])
+                {
+                    offset = mark;
+                    break;
+                }
+            }
+            else if (!Character.isLetterOrDigit(decode(rune)))
+            {
+                offset = mark;
+                break;
+            }
+        }
 
-        int rune = input.read();
+        int length = offset - start;
 
-        while (Character.isLetter(rune) || Character.isDigit(rune))
+        TokenType type = keyword(start, length);
+        if (type != TokenType.NAME && type != TokenType.THIS)
         {
-            buffer.append((char)rune);
-            rune = input.read();
+            return emit(type);
         }
 
-        input.unread(rune);
-
-        position.setColumn(position.getColumn() + buffer.length());
-
-        String keyword = buffer.toString();
+        return emit(type, Operator.NONE, symbols.intern(source, start, length).getId());
+    }
 
-        if (keywords.containsKey(keyword))
+    private TokenType keyword(int start, int length)
+    {
+        for (int i = 0; i < keywords.length; i++)
         {
-            return emit(keywords.get(keyword));
+            byte[] text = keywordText[i];
+            if (text.length == length && Arrays.equals(source, start, start + length, text, 0, length))
+            {
+                return keywords[i];
+            }
         }
+        return TokenType.NAME;
+    }
 
-        return emit(TokenType.NAME);
+    private boolean emitLiteral(LiteralKind kind, long bits)
+    {
+        emit(TokenType.LITERAL);
+        tokens.setLiteral(tokens.size() - 1, kind, bits);
+        return false;
     }
 
-    private boolean number(int first) throws IOException
+    private boolean number() throws Error
     {
-        buffer.append((char)first);
+        boolean negative = source[start] == '-';
 
-        int rune = input.read();
+        // accumulate negatively so that Long.MIN_VALUE still fits
+        long value = 0;
+        boolean overflow = false;
+        int dots = 0;
+
+        offset = negative ? start + 1 : start;
+
+        int rune = read();
         while (('0' <= rune && rune <= '9') || rune == '.') {
-            buffer.append((char)rune);
-            rune = input.read();
+            if (rune == '.')
+            {
+                dots++;
+            }
+            else if (dots == 0 && !overflow)
+            {
+                int digit = rune - '0';
+                if (value < (Long.MIN_VALUE + digit) / 10)
+                {
+                    overflow = true;
+                }
+                value = value * 10 - digit;
+            }
+            rune = read();
         }
 
-        input.unread(rune);
+        unread();
 
-        return emit(TokenType.LITERAL);
+        if (dots > 1)
+        {
+            throw new Error("malformed number literal", position());
+        }
+
+        if (!negative)
+        {
+            if (value == Long.MIN_VALUE)
+            {
+                overflow = true;
+            }
+            value = -value;
+        }
+
+        if (dots == 1 || overflow)
+        {
+            // NOTE: only reached for the rare decimal literal, which is already validated above
+            double real = Double.parseDouble(new String(source, start, offset - start, StandardCharsets.US_ASCII));
+            return emitLiteral(LiteralKind.F32, Double.doubleToRawLongBits(real));
+        }
+
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        {
+            return emitLiteral(LiteralKind.S32, value);
+        }
+
+        return emitLiteral(LiteralKind.S64, value);
     }
 
-    private boolean comment() throws IOException
+    private boolean comment()
     {
-        int rune = input.read();
-        while (rune != '\n')
+        int rune = read();
+        while (rune != '\n' && rune != EOF)
         {
-            rune = input.read();
+            rune = read();
         }
         return false;
     }
 
-    private boolean commentMulti() throws IOException
+    private boolean commentMulti()
     {
         int rune = 0;
         int last;
         do
         {
             last = rune;
-            rune = input.read();
+            rune = read();
         } while (rune != EOF && !(last == '*' && rune == '/'));
         return false;
     }
 
-    private boolean string() throws IOException
+    private boolean string()
     {
-        int rune = input.read();
-        while (rune != '"') {
-            buffer.append((char)rune);
-            rune = input.read();
+        int rune = read();
+        while (rune != '"' && rune != EOF) {
+            rune = read();
         }
 
-        return emit(TokenType.LITERAL);
+        return emitLiteral(LiteralKind.STRING, 0);
     }
 
-    private static final HashMap<String, TokenType> keywords = new HashMap<>();
+    private static final TokenType[] keywords = new TokenType[]
+    {
+        TokenType.ELSE,
+        TokenType.FALSE,
+        TokenType.FOR,
+        TokenType.IF,
+        TokenType.IMPORT,
+        TokenType.NIL,
+        TokenType.PACKAGE,
+        TokenType.RETURN,
+        TokenType.THIS,
+        TokenType.TRUE,
+    };
+
+    private static final byte[][] keywordText = new byte[keywords.length][];
+
+    private static final boolean[] identifierPart = new boolean[0x80];
+
+    private static final int[] minimumRune = new int[] { 0, 0x80, 0x800, 0x10000 };
 
     static {
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("if", TokenType.IF);
-        keywords.put("import", TokenType.IMPORT);
-        keywords.put("nil", TokenType.NIL);
-        keywords.put("package", TokenType.PACKAGE);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("true", TokenType.TRUE);
+        for (int i = 0; i < keywords.length; i++)
+        {
+            keywordText[i] = keywords[i].toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        for (int i = 0; i < identifierPart.length; i++)
+        {
+            identifierPart[i] = Character.isLetterOrDigit(i);
+        }
     }
 
     public static class Error extends CompilerException
@@ -0,0 +1,155 @@
+package net.seancallahan.opus.compiler;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class LineMap
+{
+    private final File file;
+    private final byte[] source;
+
+    // offset of the first byte of each line, built on first use
+    private volatile int[] starts;
+
+    public LineMap(File file, byte[] source)
+    {
+        this.file = file;
+        this.source = source;
+    }
+
+    private LineMap(File file, byte[] source, int[] starts)
+    {
+        this.file = file;
+        this.source = source;
+        this.starts = starts;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public int getLineCount()
+    {
+        return getStarts().length;
+    }
+
+    public int getLineStart(int line)
+    {
+        return getStarts()[line - 1];
+    }
+
+    public int getLine(int offset)
+    {
+        int[] starts = getStarts();
+
+        int index = Arrays.binarySearch(starts, offset);
+        if (index < 0)
+        {
+            index = -index - 2;
+        }
+
+        return index + 1;
+    }
+
+    public int getColumn(int offset)
+    {
+        int end = Math.min(offset, source.length);
+
+        // count code points rather than bytes by skipping UTF-8 continuation bytes
+        int column = 1;
+        for (int i = getLineStart(getLine(offset)); i < end; i++)
+        {
+            if ((source[i] & 0xC0) != 0x80)
+            {
+                column++;
+            }
+        }
+        return column;
+    }
+
+    public SourceFile.Position getPosition(int offset)
+    {
+        return new SourceFile.Position(file, getLine(offset), getColumn(offset));
+    }
+
+    public LineMap edit(byte[] source, int offset, int removed, byte[] inserted)
+    {
+        int[] starts = this.starts;
+        if (starts == null)
+        {
+            // nothing has asked for a position yet, so stay lazy
+            return new LineMap(file, source);
+        }
+
+        int head = countUpTo(starts, offset);
+        int tail = countUpTo(starts, offset + removed);
+
+        int added = 0;
+        for (byte b : inserted)
+        {
+            if (b == '\n')
+            {
+                added++;
+            }
+        }
+
+        int[] result = new int[head + added + starts.length - tail];
+        System.arraycopy(starts, 0, result, 0, head);
+
+        int count = head;
+        for (int i = 0; i < inserted.length; i++)
+        {
+            if (inserted[i] == '\n')
+            {
+                result[count++] = offset + i + 1;
+            }
+        }
+
+        int delta = inserted.length - removed;
+        for (int i = tail; i < starts.length; i++)
+        {
+            result[count++] = starts[i] + delta;
+        }
+
+        return new LineMap(file, source, result);
+    }
+
+    private static int countUpTo(int[] starts, int offset)
+    {
+        int index = Arrays.binarySearch(starts, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private int[] getStarts()
+    {
+        int[] starts = this.starts;
+        if (starts == null)
+        {
+            // NOTE: racing threads compute the same table, so the last write wins harmlessly
+            starts = scan(source);
+            this.starts = starts;
+        }
+        return starts;
+    }
+
+    private static int[] scan(byte[] source)
+    {
+        int[] starts = new int[16];
+        int count = 1;
+
+        for (int i = 0; i < source.length; i++)
+        {
+            if (source[i] == '\n')
+            {
+                if (count == starts.length)
+                {
+                    starts = Arrays.copyOf(starts, count << 1);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+
+        return Arrays.copyOf(starts, count);
+    }
+}
@@ -0,0 +1,37 @@
+package net.seancallahan.opus.compiler;
+
+import net.seancallahan.opus.lang.Type;
+
+public enum LiteralKind
+{
+    NONE(null),
+    S32("s32"),
+    S64("s64"),
+    F32("f32"),
+    STRING("string"),
+    ;
+
+    private final String typeName;
+    private final Type type;
+
+    LiteralKind(String typeName)
+    {
+        this.typeName = typeName;
+        this.type = typeName != null ? Type.of(typeName) : null;
+    }
+
+    public String getTypeName()
+    {
+        return typeName;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public boolean isNumber()
+    {
+        return this == S32 || this == S64 || this == F32;
+    }
+}
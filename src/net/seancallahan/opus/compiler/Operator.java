@@ -1,7 +1,5 @@
 package net.seancallahan.opus.compiler;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.HashMap;
 
 public enum Operator
@@ -38,11 +36,6 @@ public enum Operator
         return super.toString();
     }
 
-    public void writeTo(DataOutputStream out) throws IOException
-    {
-        out.writeByte(ordinal());
-    }
-
     private static final HashMap<Operator, String> text = new HashMap<>();
 
     static
@@ -1,14 +1,21 @@
 package net.seancallahan.opus.compiler;
 
+import net.seancallahan.opus.compiler.parser.Statement;
+import net.seancallahan.opus.lang.Declaration;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Package
 {
     private final String name;
 
     private final List<SourceFile> files = new ArrayList<>();
-    private final Scope scope = new Scope(null);
+
+    // every file of the package declares into this as it is parsed, which can be on several threads at once
+    private final Map<Symbol, Declaration> declarations = new ConcurrentHashMap<>();
 
     public Package(String name)
     {
@@ -25,8 +32,38 @@ public class Package
         return files;
     }
 
-    public Scope getScope()
+    public Map<Symbol, Declaration> getDeclarations()
+    {
+        return declarations;
+    }
+
+    public Declaration get(Symbol name)
+    {
+        return declarations.get(name);
+    }
+
+    // the file of the package that declares it, or null if none of them does
+    public SourceFile getFile(Declaration declaration)
+    {
+        Symbol name = declaration.getName().getSymbol();
+        for (SourceFile file : files)
+        {
+            if (file.getParser() != null && file.getParser().getDeclarations().get(name) == declaration)
+            {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    // gives back the declaration that already has the name, or null if this one was given it
+    public Declaration declare(Declaration declaration)
     {
-        return scope;
+        if (declaration instanceof Statement.Import)
+        {
+            // an import only applies to the file it is in
+            return null;
+        }
+        return declarations.putIfAbsent(declaration.getName().getSymbol(), declaration);
     }
 }
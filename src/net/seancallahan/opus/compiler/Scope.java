@@ -7,12 +7,25 @@ import java.util.Map;
 
 public class Scope
 {
+    private static final int ALL = Integer.MAX_VALUE;
+
     private final Scope parent;
-    private final Map<String, Declaration> members = new HashMap<>();
+
+    // how many of the parent's members this scope can see; a copy only sees what existed when it was made
+    private final int visible;
+
+    private Map<Symbol, Member> members;
+    private int size;
 
     public Scope(Scope parent)
+    {
+        this(parent, ALL);
+    }
+
+    private Scope(Scope parent, int visible)
     {
         this.parent = parent;
+        this.visible = visible;
     }
 
     public Scope getParent()
@@ -20,56 +33,107 @@ public class Scope
         return parent;
     }
 
-    public Declaration get(String name)
+    public Declaration get(Symbol name)
     {
-        if (members.containsKey(name))
-        {
-            return members.get(name);
-        }
-        if (parent != null)
-        {
-            return parent.get(name);
-        }
-        return null;
+        return get(name, ALL);
+    }
+
+    // only the first few of this scope's own members can be seen, the members of its parents are seen as usual
+    public Declaration get(Symbol name, int visible)
+    {
+        Member member = find(name, visible);
+        return member != null ? member.declaration : null;
+    }
+
+    public boolean contains(Symbol name)
+    {
+        return find(name, ALL) != null;
+    }
+
+    // where the name is among this scope's own members, in the order they were added, or -1 if it isn't one of them
+    public int indexOf(Symbol name)
+    {
+        Member member = members != null ? members.get(name) : null;
+        return member != null ? member.index : -1;
     }
 
-    public boolean contains(String name)
+    public int size()
     {
-        return members.containsKey(name) || (parent != null && parent.members.containsKey(name));
+        return size;
+    }
+
+    private Member find(Symbol name, int visible)
+    {
+        int limit = visible;
+        for (Scope scope = this; scope != null; scope = scope.parent)
+        {
+            if (scope.members != null)
+            {
+                Member member = scope.members.get(name);
+                if (member != null && member.index < limit)
+                {
+                    return member;
+                }
+            }
+            limit = scope.visible;
+        }
+        return null;
     }
 
-    public void put(String key, Declaration declaration)
+    public void put(Symbol key, Declaration declaration)
     {
-        members.put(key, declaration);
+        Member member = members != null ? members.get(key) : null;
+        if (member != null)
+        {
+            member.declaration = declaration;
+            return;
+        }
+        insert(key, declaration);
     }
 
-    public boolean add(String key, Declaration declaration)
+    public boolean add(Symbol key, Declaration declaration)
     {
-        if (members.containsKey(key))
+        if (members != null && members.containsKey(key))
         {
             return false;
         }
-        members.put(key, declaration);
+        insert(key, declaration);
         return true;
     }
 
     public boolean add(Declaration declaration)
     {
-        return add(declaration.getName().getValue(), declaration);
+        return add(declaration.getName().getSymbol(), declaration);
+    }
+
+    private void insert(Symbol key, Declaration declaration)
+    {
+        if (members == null)
+        {
+            members = new HashMap<>();
+        }
+        members.put(key, new Member(declaration, size++));
     }
 
     public Scope copy()
     {
-        Scope scope = new Scope(parent);
-        scope.members.putAll(members);
-        return scope;
+        return new Scope(this, size);
     }
 
     public static Scope childOf(Scope other)
     {
-        Scope scope = new Scope(other);
-        scope.members.putAll(other.members);
-        return scope;
+        return new Scope(other);
     }
 
+    private static final class Member
+    {
+        private Declaration declaration;
+        private final int index;
+
+        private Member(Declaration declaration, int index)
+        {
+            this.declaration = declaration;
+            this.index = index;
+        }
+    }
 }
@@ -1,31 +1,42 @@
 package net.seancallahan.opus.compiler;
 
 import net.seancallahan.opus.compiler.jvm.ClassFile;
+import net.seancallahan.opus.compiler.parser.AstReader;
+import net.seancallahan.opus.compiler.parser.AstWriter;
 import net.seancallahan.opus.compiler.parser.Parser;
-import net.seancallahan.opus.compiler.semantics.ReferenceResolver;
-import net.seancallahan.opus.compiler.semantics.TypeAnalysis;
+import net.seancallahan.opus.compiler.semantics.SemanticAnalysis;
 import net.seancallahan.opus.lang.Class;
 import net.seancallahan.opus.lang.Declaration;
 import net.seancallahan.opus.lang.Method;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class SourceFile
 {
+    // the package every file's static class is compiled into
+    public static final String STATIC_PACKAGE = "test";
+
     private final File file;
 
     private List<Token> tokens;
     private Lexer lexer;
     private Parser parser;
 
+    private ForkJoinPool pool;
+    private Compiler compiler;
+
     private long lastParseDuration;
 
-    public SourceFile(File file) throws IOException, Lexer.Error
+    public SourceFile(File file) throws IOException
     {
         this.file = file;
         this.lexer = new Lexer(file);
@@ -41,8 +52,44 @@ public class SourceFile
         return parser;
     }
 
-    public void lex()
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    // parse and analyze function bodies in parallel on the given pool, once the signatures have been parsed
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    public Compiler getCompiler()
+    {
+        return compiler;
+    }
+
+    // parse as one file of the compiler's build; the compiler then analyzes each of its packages as a whole
+    public void setCompiler(Compiler compiler)
+    {
+        this.compiler = compiler;
+    }
+
+    // a file on its own gets a package of its own, one that is part of a build shares it with the build's other files
+    public Package lookupPackage(String name)
     {
+        if (compiler != null)
+        {
+            return compiler.getPackage(name);
+        }
+
+        Package pkg = new Package(name);
+        pkg.getFiles().add(this);
+        return pkg;
+    }
+
+    public void lex() throws Lexer.Error
+    {
+        lexer.lex();
         this.tokens = lexer.getTokens();
     }
 
@@ -58,34 +105,158 @@ public class SourceFile
 
     public void parse() throws CompilerException
     {
+        long start = System.nanoTime();
+
         if (tokens == null)
         {
-            throw new IllegalStateException("must first call lex()");
+            // nothing has been lexed up front, so pull tokens as the parser asks for them
+            this.parser = new Parser(this, new TokenStream(lexer), new Scope(null));
+        }
+        else
+        {
+            this.parser = new Parser(this, tokens, new Scope(null));
+        }
+        this.parser.setPool(pool);
+        List<CompilerException> errors = new ArrayList<>();
+        try
+        {
+            this.parser.parse();
+        }
+        catch (CompilationFailedException e)
+        {
+            // carry on with whatever could be parsed, so that resolution errors are reported in the same run
+            errors.addAll(e.getErrors());
         }
 
+        if (compiler == null)
+        {
+            analyze(errors);
+        }
+        else if (!errors.isEmpty())
+        {
+            throw new CompilationFailedException(errors);
+        }
+
+        lastParseDuration = System.nanoTime() - start;
+    }
+
+    // read the tree back from an ast file written by save; the source is only lexed again where the tree refers to it
+    public void load(DataInputStream in) throws IOException, CompilerException
+    {
         long start = System.nanoTime();
 
-        this.parser = new Parser(this, tokens, new Scope(null));
-        this.parser.parse();
+        this.parser = new AstReader(in).read(this);
+
+        if (compiler == null)
+        {
+            analyze(new ArrayList<>());
+        }
+
+        lastParseDuration = System.nanoTime() - start;
+    }
+
+    // where save is expected to have left the tree of this file
+    public File getAstFile()
+    {
+        return new File(file.getAbsoluteFile().getParent(), file.getName() + ".ast");
+    }
+
+    // loads the saved tree instead of parsing, as long as it was saved from the source as it is now; false when there
+    // is no such tree, and the file has to be parsed
+    public boolean loadSaved() throws CompilerException
+    {
+        File astFile = getAstFile();
+        if (!astFile.isFile())
+        {
+            return false;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(astFile))))
+        {
+            load(in);
+            return true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // out of date with the source, from another version of the format, or damaged in a way the reader missed;
+            // the tree is only a cache, so the file is parsed instead
+            this.parser = null;
+            return false;
+        }
+    }
+
+    public void save(DataOutputStream out) throws IOException
+    {
+        new AstWriter(out).write(this);
+    }
+
+    private void analyze(List<CompilerException> errors) throws CompilerException
+    {
+        try
+        {
+            SemanticAnalysis analysis = new SemanticAnalysis(parser);
+            analysis.setPool(pool);
+
+            // NOTE: types are only checked on a tree that parsed cleanly, since a broken one mostly gives follow-on errors
+            analysis.setCheckTypes(errors.isEmpty());
+            try
+            {
+                analysis.perform();
+            }
+            catch (CompilationFailedException e)
+            {
+                errors.addAll(e.getErrors());
+            }
+        }
+        catch (UncheckedCompilerException e)
+        {
+            // a lazily parsed body failed when it was first used
+            errors.add(e.getCause());
+        }
+
+        if (!errors.isEmpty())
+        {
+            throw new CompilationFailedException(errors);
+        }
+    }
+
+    public void parseSignatures() throws CompilerException
+    {
+        long start = System.nanoTime();
 
-        ReferenceResolver referenceResolver = new ReferenceResolver(parser);
-        referenceResolver.resolve();
+        if (tokens == null)
+        {
+            lex();
+        }
 
-        TypeAnalysis typeAnalysis = new TypeAnalysis(parser);
-        typeAnalysis.perform();
+        this.parser = new Parser(this, tokens, new Scope(null));
+        this.parser.setLazyBodies(true);
+        this.parser.parse();
 
         lastParseDuration = System.nanoTime() - start;
     }
 
-    public void compile() throws IOException, CompilerException
+    // the class that the functions declared outside of any class are compiled into
+    public String getStaticClassName()
     {
-        String basePath = file.getParentFile().getAbsolutePath();
+        return getBaseName() + "_static";
+    }
 
+    private String getBaseName()
+    {
         String fileName = file.getName();
         int pos = fileName.lastIndexOf(".");
         if (pos > 0) {
             fileName = fileName.substring(0, pos);
         }
+        return fileName;
+    }
+
+    public void compile() throws IOException, CompilerException
+    {
+        String basePath = file.getParentFile().getAbsolutePath();
+
+        String fileName = getBaseName();
 
         List<Function> staticFunctions = new ArrayList<>();
 
@@ -95,7 +266,10 @@ public class SourceFile
             {
                 Class clazz = (Class)declaration;
                 String name = clazz.getName().getValue();
-                createClassFile(basePath, fileName + "_" + name, new ClassFile(file, clazz));
+
+                ClassFile classFile = new ClassFile(file, clazz);
+                classFile.setPackage(parser.getPackage());
+                createClassFile(basePath, fileName + "_" + name, classFile);
             }
             else if (declaration instanceof Function && !(declaration instanceof Method))
             {
@@ -105,7 +279,9 @@ public class SourceFile
 
         if (staticFunctions.size() > 0)
         {
-            createClassFile(basePath, fileName + "_static", new ClassFile(file, fileName + "_static", "test", staticFunctions));
+            ClassFile classFile = new ClassFile(file, getStaticClassName(), STATIC_PACKAGE, staticFunctions);
+            classFile.setPackage(parser.getPackage());
+            createClassFile(basePath, getStaticClassName(), classFile);
         }
     }
 
@@ -120,8 +296,8 @@ public class SourceFile
     {
         private final File file;
 
-        private int line;
-        private int column;
+        private final int line;
+        private final int column;
 
         public Position(File file, int line, int column)
         {
@@ -140,35 +316,10 @@ public class SourceFile
             return line;
         }
 
-        public void setLine(int line)
-        {
-            this.line = line;
-        }
-
         public int getColumn()
         {
             return column;
         }
-
-        public void setColumn(int column)
-        {
-            this.column = column;
-        }
-
-        public void incrementColumn()
-        {
-            this.column++;
-        }
-
-        public void incrementLine()
-        {
-            this.line++;
-        }
-
-        public static SourceFile.Position copy(SourceFile.Position other)
-        {
-            return new SourceFile.Position(other.file, other.line, other.column);
-        }
     }
 
 }
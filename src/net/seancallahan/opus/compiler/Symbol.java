@@ -0,0 +1,44 @@
+package net.seancallahan.opus.compiler;
+
+public final class Symbol
+{
+    private final int id;
+    private final String name;
+    private final int hash;
+
+    Symbol(int id, String name)
+    {
+        this.id = id;
+        this.name = name;
+        this.hash = name.hashCode();
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        // symbols are interned, so identity is equality
+        return this == obj;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
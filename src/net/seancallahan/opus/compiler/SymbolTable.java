@@ -0,0 +1,125 @@
+package net.seancallahan.opus.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class SymbolTable
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    // NOTE: the interned symbols are shared by the whole process and never released, so the table only grows, by
+    // every distinct name of every file ever lexed. It can't be scoped to one build: symbols compare by identity, and
+    // constants like Method's this and the ids kept in token buffers rely on one table for the whole process. That is
+    // fine for a single build, but a long running process that compiles unrelated sources will keep all of their names.
+    private static final ConcurrentHashMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+    private static volatile Symbol[] byId = new Symbol[1024];
+    private static int count;
+
+    // per-table cache keyed on the raw bytes, so repeated identifiers never become Strings
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private Symbol[] entries = new Symbol[INITIAL_CAPACITY];
+    private byte[][] texts = new byte[INITIAL_CAPACITY][];
+    private int size;
+
+    public static Symbol intern(String name)
+    {
+        Symbol symbol = symbols.get(name);
+        if (symbol != null)
+        {
+            return symbol;
+        }
+
+        synchronized (SymbolTable.class)
+        {
+            symbol = symbols.get(name);
+            if (symbol == null)
+            {
+                symbol = new Symbol(count, name);
+
+                Symbol[] table = byId;
+                if (count == table.length)
+                {
+                    table = Arrays.copyOf(table, count << 1);
+                }
+                table[count++] = symbol;
+                byId = table;
+
+                symbols.put(name, symbol);
+            }
+            return symbol;
+        }
+    }
+
+    public static Symbol get(int id)
+    {
+        return byId[id];
+    }
+
+    public Symbol intern(byte[] source, int start, int length)
+    {
+        int hash = 1;
+        for (int i = start; i < start + length; i++)
+        {
+            hash = 31 * hash + source[i];
+        }
+
+        int mask = entries.length - 1;
+        int slot = hash & mask;
+
+        while (entries[slot] != null)
+        {
+            byte[] text = texts[slot];
+            if (hashes[slot] == hash && text.length == length && Arrays.equals(text, 0, length, source, start, start + length))
+            {
+                return entries[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        Symbol symbol = intern(new String(source, start, length, StandardCharsets.UTF_8));
+
+        hashes[slot] = hash;
+        entries[slot] = symbol;
+        texts[slot] = Arrays.copyOfRange(source, start, start + length);
+
+        if (++size * 2 > entries.length)
+        {
+            rehash();
+        }
+
+        return symbol;
+    }
+
+    private void rehash()
+    {
+        int[] oldHashes = hashes;
+        Symbol[] oldEntries = entries;
+        byte[][] oldTexts = texts;
+
+        int capacity = oldEntries.length << 1;
+        int mask = capacity - 1;
+
+        hashes = new int[capacity];
+        entries = new Symbol[capacity];
+        texts = new byte[capacity][];
+
+        for (int i = 0; i < oldEntries.length; i++)
+        {
+            if (oldEntries[i] == null)
+            {
+                continue;
+            }
+
+            int slot = oldHashes[i] & mask;
+            while (entries[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            hashes[slot] = oldHashes[i];
+            entries[slot] = oldEntries[i];
+            texts[slot] = oldTexts[i];
+        }
+    }
+}
@@ -1,32 +1,56 @@
 package net.seancallahan.opus.compiler;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
-
 public class Token
 {
     private final TokenType type;
 
-    private final String value;
+    private final Operator operator;
+
+    private final TokenBuffer buffer;
+    private final int start;
+    private final int length;
 
-    private final SourceFile.Position position;
+    private int symbolId = -1;
+    private Symbol symbol;
 
-    private final Operator operator;
+    private LiteralKind literalKind = LiteralKind.NONE;
+    private long literal;
+
+    private String value;
 
     public Token(TokenType type, String value)
     {
         this.type = type;
         this.value = value;
-        this.position = null;
         this.operator = null;
+        this.buffer = null;
+        this.start = 0;
+        this.length = 0;
+    }
+
+    Token(TokenBuffer buffer, int index)
+    {
+        this.type = buffer.getType(index);
+        this.operator = buffer.getOperator(index);
+        this.buffer = buffer;
+        this.start = buffer.getStart(index);
+        this.length = buffer.getLength(index);
+        this.symbolId = buffer.getSymbol(index);
+        this.literalKind = buffer.getLiteralKind(index);
+        this.literal = buffer.getLiteral(index);
     }
 
-    public Token(TokenType type, String value, SourceFile.Position position, Operator operator)
+    // a token whose fields were kept somewhere other than a buffer, e.g. by the parser once a window has moved on
+    public Token(TokenBuffer buffer, TokenType type, int start, int length, int symbolId, LiteralKind literalKind, long literal)
     {
         this.type = type;
-        this.value = value;
-        this.position = position;
-        this.operator = operator;
+        this.operator = Operator.NONE;
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+        this.symbolId = symbolId;
+        this.literalKind = literalKind;
+        this.literal = literal;
     }
 
     public TokenType getType()
@@ -36,12 +60,99 @@ public class Token
 
     public String getValue()
     {
+        if (value == null)
+        {
+            value = readValue();
+        }
         return value;
     }
 
+    public TokenBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    public int getSymbolId()
+    {
+        return symbolId;
+    }
+
+    public LiteralKind getLiteralKind()
+    {
+        return literalKind;
+    }
+
+    public long getLong()
+    {
+        if (literalKind == LiteralKind.F32)
+        {
+            return (long) Double.longBitsToDouble(literal);
+        }
+        return literal;
+    }
+
+    public long getLiteralBits()
+    {
+        return literal;
+    }
+
+    public double getDouble()
+    {
+        if (literalKind == LiteralKind.F32)
+        {
+            return Double.longBitsToDouble(literal);
+        }
+        return literal;
+    }
+
+    public Symbol getSymbol()
+    {
+        if (symbol == null)
+        {
+            symbol = symbolId >= 0 ? SymbolTable.get(symbolId) : SymbolTable.intern(getValue());
+        }
+        return symbol;
+    }
+
+    private String readValue()
+    {
+        if (symbolId >= 0)
+        {
+            return getSymbol().getName();
+        }
+
+        byte[] source = buffer.getSource();
+
+        if (type == TokenType.LITERAL && length > 0 && source[start] == '"')
+        {
+            int end = start + length;
+            if (length > 1 && source[end - 1] == '"')
+            {
+                end--;
+            }
+            return buffer.getText(start + 1, end - start - 1);
+        }
+
+        return buffer.getText(start, length);
+    }
+
+    public int getOffset()
+    {
+        return start;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
     public SourceFile.Position getPosition()
     {
-        return position;
+        if (buffer == null)
+        {
+            return null;
+        }
+        return buffer.getLines().getPosition(start);
     }
 
     public Operator getOperator()
@@ -63,11 +174,4 @@ public class Token
         }
         return out;
     }
-
-    public void writeTo(DataOutputStream out) throws IOException
-    {
-        out.writeByte(type.ordinal());
-        out.writeUTF(value);
-    }
-
 }
@@ -0,0 +1,220 @@
+package net.seancallahan.opus.compiler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+public class TokenBuffer extends AbstractList<Token> implements RandomAccess
+{
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final TokenType[] types = TokenType.values();
+    private static final Operator[] operators = Operator.values();
+    private static final LiteralKind[] literalKinds = LiteralKind.values();
+
+    private final File file;
+    private final byte[] source;
+    private final LineMap lines;
+
+    private byte[] type = new byte[INITIAL_CAPACITY];
+    private byte[] operator = new byte[INITIAL_CAPACITY];
+    private int[] start = new int[INITIAL_CAPACITY];
+    private int[] length = new int[INITIAL_CAPACITY];
+    private int[] symbol = new int[INITIAL_CAPACITY];
+    private byte[] literalKind = new byte[INITIAL_CAPACITY];
+    private long[] literal = new long[INITIAL_CAPACITY];
+
+    private int size;
+    private boolean discarded;
+
+    public TokenBuffer(File file, byte[] source)
+    {
+        this(source, new LineMap(file, source));
+    }
+
+    TokenBuffer(byte[] source, LineMap lines)
+    {
+        this.file = lines.getFile();
+        this.source = source;
+        this.lines = lines;
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public byte[] getSource()
+    {
+        return source;
+    }
+
+    public LineMap getLines()
+    {
+        return lines;
+    }
+
+    public int add(TokenType type, Operator operator, int start, int length, int symbol)
+    {
+        if (size == this.type.length)
+        {
+            grow(size + 1);
+        }
+
+        this.type[size] = (byte)type.ordinal();
+        this.operator[size] = (byte)operator.ordinal();
+        this.start[size] = start;
+        this.length[size] = length;
+        this.symbol[size] = symbol;
+        this.literalKind[size] = (byte)LiteralKind.NONE.ordinal();
+        this.literal[size] = 0;
+
+        return size++;
+    }
+
+    public void setLiteral(int index, LiteralKind kind, long bits)
+    {
+        literalKind[index] = (byte)kind.ordinal();
+        literal[index] = bits;
+    }
+
+    void append(TokenBuffer other, int from, int to, int shift)
+    {
+        int count = to - from;
+        if (size + count > type.length)
+        {
+            grow(size + count);
+        }
+
+        System.arraycopy(other.type, from, type, size, count);
+        System.arraycopy(other.operator, from, operator, size, count);
+        System.arraycopy(other.start, from, start, size, count);
+        System.arraycopy(other.length, from, length, size, count);
+        System.arraycopy(other.symbol, from, symbol, size, count);
+        System.arraycopy(other.literalKind, from, literalKind, size, count);
+        System.arraycopy(other.literal, from, literal, size, count);
+
+        if (shift != 0)
+        {
+            for (int i = size; i < size + count; i++)
+            {
+                start[i] += shift;
+            }
+        }
+
+        size += count;
+    }
+
+    void truncate(int size)
+    {
+        this.size = size;
+    }
+
+    @Override
+    public void clear()
+    {
+        size = 0;
+        discarded = true;
+    }
+
+    public boolean hasDiscarded()
+    {
+        return discarded;
+    }
+
+    public int lastEndingBefore(int offset)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (start[mid] + length[mid] <= offset)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    public int indexOfStart(int offset, int from)
+    {
+        int index = Arrays.binarySearch(start, from, size, offset);
+        return index >= 0 ? index : -1;
+    }
+
+    private void grow(int minimum)
+    {
+        int capacity = Math.max(type.length << 1, minimum);
+
+        type = Arrays.copyOf(type, capacity);
+        operator = Arrays.copyOf(operator, capacity);
+        start = Arrays.copyOf(start, capacity);
+        length = Arrays.copyOf(length, capacity);
+        symbol = Arrays.copyOf(symbol, capacity);
+        literalKind = Arrays.copyOf(literalKind, capacity);
+        literal = Arrays.copyOf(literal, capacity);
+    }
+
+    public TokenType getType(int index)
+    {
+        return types[type[index]];
+    }
+
+    public Operator getOperator(int index)
+    {
+        return operators[operator[index]];
+    }
+
+    public int getStart(int index)
+    {
+        return start[index];
+    }
+
+    public int getLength(int index)
+    {
+        return length[index];
+    }
+
+    public int getSymbol(int index)
+    {
+        return symbol[index];
+    }
+
+    public LiteralKind getLiteralKind(int index)
+    {
+        return literalKinds[literalKind[index]];
+    }
+
+    public long getLiteral(int index)
+    {
+        return literal[index];
+    }
+
+    public String getText(int start, int length)
+    {
+        return new String(source, start, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Token get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new Token(this, index);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,102 @@
+package net.seancallahan.opus.compiler;
+
+import net.seancallahan.opus.util.PeekableIterator;
+
+public class TokenStream implements PeekableIterator<Token>
+{
+    private final Lexer lexer;
+    private final TokenBuffer window;
+
+    private int next = 0;
+
+    private Token peeked;
+    private int peekedIndex = -1;
+
+    public TokenStream(Lexer lexer)
+    {
+        this.lexer = lexer;
+        this.window = lexer.getTokens();
+    }
+
+    private boolean fill()
+    {
+        return fill(0);
+    }
+
+    private boolean fill(int ahead)
+    {
+        if (next > 0 && next == window.size())
+        {
+            // everything lexed so far has been consumed, so the window can be reused
+            window.clear();
+            next = 0;
+            peekedIndex = -1;
+        }
+
+        try
+        {
+            while (next + ahead >= window.size())
+            {
+                if (!lexer.advance())
+                {
+                    return false;
+                }
+            }
+        }
+        catch (Lexer.Error e)
+        {
+            throw new UncheckedCompilerException(e);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return fill();
+    }
+
+    @Override
+    public Token next()
+    {
+        Token value = peek();
+        next++;
+        return value;
+    }
+
+    @Override
+    public Token peek()
+    {
+        if (!fill())
+        {
+            return null;
+        }
+        if (peekedIndex != next)
+        {
+            peeked = window.get(next);
+            peekedIndex = next;
+        }
+        return peeked;
+    }
+
+    @Override
+    public Token peek(int ahead)
+    {
+        if (!fill(ahead))
+        {
+            return null;
+        }
+        return window.get(next + ahead);
+    }
+
+    @Override
+    public void skip(int n)
+    {
+        if (n < 0)
+        {
+            throw new IllegalArgumentException("can only skip a positive amount");
+        }
+        next += n;
+    }
+}
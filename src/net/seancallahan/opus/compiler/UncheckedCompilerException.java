@@ -0,0 +1,15 @@
+package net.seancallahan.opus.compiler;
+
+public class UncheckedCompilerException extends RuntimeException
+{
+    public UncheckedCompilerException(CompilerException cause)
+    {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public CompilerException getCause()
+    {
+        return (CompilerException) super.getCause();
+    }
+}
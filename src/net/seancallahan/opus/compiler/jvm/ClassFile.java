@@ -3,6 +3,7 @@ package net.seancallahan.opus.compiler.jvm;
 import net.seancallahan.opus.compiler.CompilerException;
 import net.seancallahan.opus.compiler.Function;
 import net.seancallahan.opus.compiler.Package;
+import net.seancallahan.opus.compiler.Symbol;
 import net.seancallahan.opus.compiler.Token;
 import net.seancallahan.opus.compiler.TokenType;
 import net.seancallahan.opus.compiler.jvm.attributes.Attribute;
@@ -17,6 +18,7 @@ import net.seancallahan.opus.lang.Variable;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -48,9 +50,12 @@ public class ClassFile
     private final short superClass;
 
     private final Constant.MethodRef initializer;
-    private final Map<String, Constant.Reference> references = new HashMap<>();
+    private final Map<Symbol, Constant.Reference> references = new HashMap<>();
     private final List<Attribute> attributes = new ArrayList<>();
 
+    // the package the class was compiled from, which any function outside of the class is found through
+    private Package pkg;
+
     public ClassFile(File file, Class clazz)
     {
         this(file, clazz, clazz.isPublic() ? AccessFlag.PUBLIC : AccessFlag.PRIVATE);
@@ -101,6 +106,7 @@ public class ClassFile
         Function init = new Function(new Token(TokenType.NAME, "<init>"), null);
 
         this.initializer = new Constant.MethodRef(constantPool, new Method(init, base, false));
+        constantPool.add(initializer);
 
         this.superClass = constantPool.add(new Constant.Class(constantPool, base));
 
@@ -119,11 +125,51 @@ public class ClassFile
         return theClass;
     }
 
-    public Map<String, Constant.Reference> getReferences()
+    public Constant.MethodRef getInitializer()
+    {
+        return initializer;
+    }
+
+    public Map<Symbol, Constant.Reference> getReferences()
     {
         return references;
     }
 
+    public Package getPackage()
+    {
+        return pkg;
+    }
+
+    public void setPackage(Package pkg)
+    {
+        this.pkg = pkg;
+    }
+
+    // a function that is not part of this class is called through the static class of the file that declares it,
+    // which can be another file of the package; null if there is no such file
+    public Constant.Reference getReference(Function function)
+    {
+        Constant.Reference ref = references.get(function.getName().getSymbol());
+        if (ref != null || pkg == null || function instanceof Method)
+        {
+            return ref;
+        }
+
+        net.seancallahan.opus.compiler.SourceFile owner = pkg.getFile(function);
+        if (owner == null)
+        {
+            return null;
+        }
+
+        Package staticPkg = new Package(net.seancallahan.opus.compiler.SourceFile.STATIC_PACKAGE);
+        Class clazz = new Class(staticPkg, new Token(TokenType.NAME, owner.getStaticClassName()));
+
+        ref = new Constant.MethodRef(constantPool, new Method(function, clazz, true));
+        references.put(function.getName().getSymbol(), ref);
+        constantPool.add(ref);
+        return ref;
+    }
+
     public void write(DataOutputStream out) throws IOException, CompilerException
     {
         out.writeInt((int)magic);
@@ -139,7 +185,7 @@ public class ClassFile
         buffer.putShort((short)fields.length);
         for (Variable field : fields)
         {
-            writeField(buffer, field, references.get(field.getName().getValue()));
+            writeField(buffer, field, references.get(field.getName().getSymbol()));
         }
 
         buffer.putShort((short)(methods.length + 1)); // +1 for the constructor
@@ -149,7 +195,7 @@ public class ClassFile
 
         for (Method method : methods)
         {
-            writeFunction(buffer, method, references.get(method.getName().getValue()));
+            writeFunction(buffer, method, references.get(method.getName().getSymbol()));
         }
 
         buffer.putShort((short)attributes.size());
@@ -160,7 +206,13 @@ public class ClassFile
 
         constantPool.write(out);
 
-        out.write(buffer.array());
+        // the buffer is direct, so copy out what was written rather than using array()
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        buffer.clear();
+
+        out.write(bytes);
     }
 
     private void addDeclaration(Declaration declaration)
@@ -179,7 +231,7 @@ public class ClassFile
             throw new UnsupportedOperationException();
         }
 
-        references.put(declaration.getName().getValue(), ref);
+        references.put(declaration.getName().getSymbol(), ref);
         constantPool.add(ref);
     }
 
@@ -201,6 +253,11 @@ public class ClassFile
         {
             accessFlags = AccessFlag.PUBLIC;
         }
+        else if (method.isStatic())
+        {
+            // the other files of the package call it through their own static classes, so it can't be private to this one
+            accessFlags = 0;
+        }
         if (method != null && method.isStatic())
         {
             accessFlags |= AccessFlag.STATIC;
@@ -210,15 +267,25 @@ public class ClassFile
         buffer.putShort(reference.getNameAndType().getNameIndex());
         buffer.putShort(reference.getNameAndType().getDescriptorIndex());
 
-        List<Attribute> attributes = new ArrayList<>();
-        attributes.add(new Code(this, attributeBuffer, method));
-
-        buffer.putShort((short)attributes.size()); // attributes_count
-        for (Attribute attribute : attributes)
+        try
         {
-            attribute.write(buffer);
+            List<Attribute> attributes = new ArrayList<>();
+            attributes.add(new Code(this, attributeBuffer, method));
+
+            buffer.putShort((short)attributes.size()); // attributes_count
+            for (Attribute attribute : attributes)
+            {
+                attribute.write(buffer);
+            }
+        }
+        catch (BufferOverflowException e)
+        {
+            // the buffers are fixed and smaller than the jvm's 65535 bytes of code, so a large function fills one first
+            throw new CompilerException(String.format("function '%s' is too large to generate", method.getName().getValue()),
+                method.getName().getPosition());
         }
 
+        buffer.flip();
         out.put(buffer);
     }
 }
@@ -3,20 +3,21 @@ package net.seancallahan.opus.compiler.jvm;
 import net.seancallahan.opus.compiler.CompilerException;
 import net.seancallahan.opus.compiler.Function;
 import net.seancallahan.opus.compiler.Operator;
+import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.compiler.TokenType;
 import net.seancallahan.opus.compiler.jvm.attributes.Code;
 import net.seancallahan.opus.compiler.jvm.attributes.LineNumberTable;
 import net.seancallahan.opus.compiler.jvm.attributes.LocalVariableTable;
 import net.seancallahan.opus.compiler.parser.Body;
 import net.seancallahan.opus.compiler.parser.Expression;
 import net.seancallahan.opus.compiler.parser.Statement;
+import net.seancallahan.opus.lang.Declaration;
 import net.seancallahan.opus.lang.Method;
 import net.seancallahan.opus.lang.Type;
 import net.seancallahan.opus.lang.Variable;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class CodeGenerator
 {
@@ -36,9 +37,6 @@ public class CodeGenerator
     private final LocalVariableTable localVariableTable;
     private final LineNumberTable lineNumberTable;
 
-    private Map<String, Byte> variables = new HashMap<>();
-    private byte nextVariable = 0;
-
     public CodeGenerator(ClassFile file, ByteBuffer buffer, Code attribute) throws CompilerException
     {
         this.classFile = file;
@@ -53,11 +51,20 @@ public class CodeGenerator
             return;
         }
 
+        if (function == classFile.getInitializer().getValue())
+        {
+            constructor(code);
+            return;
+        }
+
+        // slots were handed out by semantic analysis, this and then the parameters first
+        if (function instanceof Method && !((Method)function).isStatic())
+        {
+            maxLocalVars++;
+        }
         for (Variable param : function.getParameters())
         {
             maxLocalVars += param.getType().getStackSize();
-            variables.put(param.getName().getValue(), this.nextVariable);
-            nextVariable++;
         }
 
         attribute.getAttributes().add(localVariableTable);
@@ -69,12 +76,23 @@ public class CodeGenerator
 
         Statement last = stmts.size() > 1 ? stmts.get(stmts.size()-1) : null;
 
-        if (last != null && !(last instanceof Statement.Return))
+        if (last != null && last.getKind() != Statement.Kind.RETURN)
         {
             add(code, Instruction._return);
         }
     }
 
+    // the jvm requires a constructor, which only has to call Object's
+    private void constructor(ByteBuffer out)
+    {
+        add(out, Instruction.aload_0);
+        add(out, Instruction.invokespecial, pool.search(classFile.getInitializer()));
+        add(out, Instruction._return);
+
+        maxStack = 1;
+        maxLocalVars = 1;
+    }
+
     private void generateBody(ByteBuffer out, Body body) throws CompilerException
     {
         for (Statement stmt : body.getStatements())
@@ -84,21 +102,26 @@ public class CodeGenerator
                 continue;
             }
 
-            if (stmt instanceof Statement.VariableDeclaration)
-            {
-                variableDeclaration(out, (Statement.VariableDeclaration)stmt);
-            }
-            else if (stmt instanceof Statement.Assignment)
-            {
-                assignment(out, (Statement.Assignment)stmt);
-            }
-            else if (stmt instanceof Statement.SimpleExpression)
-            {
-                expr(out, ((Statement.SimpleExpression) stmt).getExpression());
-            }
-            else if (stmt instanceof Statement.Return)
+            short start = (short)out.position();
+
+            switch (stmt.getKind())
             {
-                returnStatement(out, (Statement.Return)stmt);
+                case VARIABLE_DECLARATION:
+                    reserve(((Statement.VariableDeclaration)stmt).getExpression());
+                    variableDeclaration(out, (Statement.VariableDeclaration)stmt);
+                    break;
+                case ASSIGNMENT:
+                    reserve(((Statement.Assignment)stmt).getExpression());
+                    assignment(out, (Statement.Assignment)stmt);
+                    break;
+                case SIMPLE_EXPRESSION:
+                    reserve(((Statement.SimpleExpression)stmt).getExpression());
+                    expr(out, ((Statement.SimpleExpression) stmt).getExpression());
+                    break;
+                case RETURN:
+                    reserve(((Statement.Return)stmt).getExpression());
+                    returnStatement(out, (Statement.Return)stmt);
+                    break;
             }
 
             if (stmt.getStartPosition() != null)
@@ -106,12 +129,62 @@ public class CodeGenerator
                 short line = (short)stmt.getStartPosition().getLine();
                 if (!lineNumberTable.contains(line))
                 {
-                    lineNumberTable.add(line, (short)code.position());
+                    // the line starts where its statement's code does
+                    lineNumberTable.add(line, start);
                 }
             }
         }
     }
 
+    // every statement starts and ends with an empty stack, so the deepest of their expressions is the method's max_stack
+    private void reserve(Expression expr)
+    {
+        int depth = expr != null ? depth(expr) : 1; // a declaration without a value pushes a zero
+        if (depth > maxStack)
+        {
+            maxStack = (short)depth;
+        }
+    }
+
+    // how deep the stack gets while the expression is evaluated, with its value left on top
+    private int depth(Expression expr)
+    {
+        switch (expr.getKind())
+        {
+            case BINARY:
+                List<Expression.Binary> spine = ((Expression.Binary)expr).getLeftSpine();
+                int depth = depth(spine.get(0).getLeft());
+                int running = size(spine.get(0).getLeft());
+                for (Expression.Binary binary : spine)
+                {
+                    depth = Math.max(depth, running + depth(binary.getRight()));
+                    running = size(binary);
+                }
+                return depth;
+            case UNARY:
+                return depth(((Expression.Unary)expr).getRight());
+            case GROUP:
+                return depth(((Expression.Group)expr).getInner());
+            case FUNCTION_CALL:
+                Expression.FunctionCall call = (Expression.FunctionCall)expr;
+                int pushed = call.isMethod() ? 1 : 0;
+                depth = Math.max(pushed, size(call));
+                for (Expression arg : call.getArguments())
+                {
+                    depth = Math.max(depth, pushed + depth(arg));
+                    pushed += size(arg);
+                }
+                return depth;
+            default:
+                return size(expr);
+        }
+    }
+
+    private static int size(Expression expr)
+    {
+        return expr.getType() != null ? expr.getType().getStackSize() : 1;
+    }
+
     public short getMaxStack()
     {
         return maxStack;
@@ -133,41 +206,45 @@ public class CodeGenerator
         out.put(args);
     }
 
-    private void expr(ByteBuffer out, Expression expr)
+    private void expr(ByteBuffer out, Expression expr) throws CompilerException
     {
         // NOTE: the expression _should_ have matching types at this point.
         // TODO: convert non-matching types
 
-        if (expr instanceof Expression.Binary)
-        {
-            binary(out, (Expression.Binary) expr);
-        }
-        else if (expr instanceof Expression.Unary)
-        {
-            unary(out, (Expression.Unary) expr);
-        }
-        else if (expr instanceof Expression.Group)
-        {
-            expr(out, ((Expression.Group) expr).getInner());
-        }
-        else if (expr instanceof Expression.FunctionCall)
-        {
-            functionCall(out, (Expression.FunctionCall) expr);
-        }
-        else if (expr instanceof Expression.Literal)
+        switch (expr.getKind())
         {
-            literal(out, (Expression.Literal) expr);
+            case BINARY:
+                binary(out, (Expression.Binary) expr);
+                break;
+            case UNARY:
+                unary(out, (Expression.Unary) expr);
+                break;
+            case GROUP:
+                expr(out, ((Expression.Group) expr).getInner());
+                break;
+            case FUNCTION_CALL:
+                functionCall(out, (Expression.FunctionCall) expr);
+                break;
+            case LITERAL:
+                literal(out, (Expression.Literal) expr);
+                break;
         }
     }
 
-    private void binary(ByteBuffer out, Expression.Binary expr)
+    private void binary(ByteBuffer out, Expression.Binary expr) throws CompilerException
     {
-        expr(out, expr.getLeft());
-        expr(out, expr.getRight());
-        add(out, getOpInstruction(expr.getLeft().getType(), expr.getOperator()));
+        // a chain leaves one running value on the stack, so it is generated in a loop rather than recursively
+        List<Expression.Binary> spine = expr.getLeftSpine();
+
+        expr(out, spine.get(0).getLeft());
+        for (Expression.Binary binary : spine)
+        {
+            expr(out, binary.getRight());
+            add(out, getOpInstruction(binary.getLeft().getType(), binary.getOperator()));
+        }
     }
 
-    private void unary(ByteBuffer out, Expression.Unary expr)
+    private void unary(ByteBuffer out, Expression.Unary expr) throws CompilerException
     {
         expr(out, expr.getRight());
         add(out, getOpInstruction(expr.getType(), expr.getOperator()));
@@ -175,18 +252,26 @@ public class CodeGenerator
 
     private void literal(ByteBuffer out, Expression.Literal expr)
     {
-        String text = expr.getToken().getValue();
+        int slot = getSlot(expr.getDeclaration());
+
+        if (slot >= 0)
+        {
+            loadNumber(out, expr.getType(), (byte)slot);
+            return;
+        }
 
-        if (variables.containsKey(text))
+        // bool literals carry no value of their own
+        TokenType type = expr.getToken().getType();
+        if (type == TokenType.TRUE || type == TokenType.FALSE)
         {
-            loadNumber(out, expr.getType(), variables.get(text));
+            pushInteger(out, expr.getType(), type == TokenType.TRUE ? 1 : 0);
             return;
         }
 
-        pushNumber(out, expr.getType(), expr.getToken().getValue());
+        pushNumber(out, expr.getType(), expr.getToken());
     }
 
-    private void variableDeclaration(ByteBuffer out, Statement.VariableDeclaration declaration)
+    private void variableDeclaration(ByteBuffer out, Statement.VariableDeclaration declaration) throws CompilerException
     {
         Type type = declaration.getVariable().getType();
         if (!type.isPrimitive())
@@ -196,37 +281,26 @@ public class CodeGenerator
 
         if (declaration.getExpression() == null)
         {
-            pushNumber(out, type, "0");
+            pushZero(out, type);
         }
         else
         {
             expr(out, declaration.getExpression());
         }
 
-        int length = storeLast(out, type, nextVariable);
+        byte slot = (byte)declaration.getVariable().getSlot();
 
-        localVariableTable.add(declaration.getVariable(), (short)code.position(), (short)3, nextVariable);
+        int length = storeLast(out, type, slot);
 
-        variables.put(declaration.getVariable().getName().getValue(), this.nextVariable);
+        localVariableTable.add(declaration.getVariable(), (short)code.position(), (short)3, slot);
 
-        nextVariable += length;
         maxLocalVars += length;
     }
 
     private void assignment(ByteBuffer out, Statement.Assignment assignment) throws CompilerException
     {
-        String var = null;
-        byte index = 0;
-        for (String variable : variables.keySet())
-        {
-            if (assignment.getName().getValue().equals(variable))
-            {
-                var = variable;
-                index = variables.get(variable);
-                break;
-            }
-        }
-        if (var == null)
+        int slot = getSlot(assignment.getDeclaration());
+        if (slot < 0)
         {
             throw new CompilerException("cannot assign to undeclared variable");
         }
@@ -234,10 +308,23 @@ public class CodeGenerator
         Expression expr = assignment.getExpression();
         this.expr(out, expr);
 
-        storeLast(out, expr.getType(), index);
+        storeLast(out, expr.getType(), (byte)slot);
+    }
+
+    private static int getSlot(Declaration declaration)
+    {
+        if (declaration instanceof Statement.VariableDeclaration)
+        {
+            return ((Statement.VariableDeclaration)declaration).getVariable().getSlot();
+        }
+        if (declaration instanceof Variable)
+        {
+            return ((Variable)declaration).getSlot();
+        }
+        return -1;
     }
 
-    private void functionCall(ByteBuffer out, Expression.FunctionCall call)
+    private void functionCall(ByteBuffer out, Expression.FunctionCall call) throws CompilerException
     {
         if (call.isMethod())
         {
@@ -259,7 +346,14 @@ public class CodeGenerator
             this.expr(out, arg);
         }
 
-        Constant.Reference ref = classFile.getReferences().get(call.getFunction().getValue());
+        Constant.Reference ref = call.isMethod()
+            ? classFile.getReferences().get(call.getFunction().getSymbol())
+            : classFile.getReference(call.getDeclaration());
+        if (ref == null)
+        {
+            throw new CompilerException(String.format("cannot generate a call to '%s' from this class", call.getFunction().getValue()),
+                call.getFunction().getPosition());
+        }
         short index = pool.search(ref);
 
         if (call.isMethod())
@@ -274,12 +368,9 @@ public class CodeGenerator
 
     private static int storeLast(ByteBuffer out, Type type, byte index)
     {
-        String name = type.getName();
-        if (name.endsWith("64"))
+        switch (type.getKind())
         {
-            if (name.startsWith("f"))
-            {
-                // double
+            case DOUBLE:
                 switch (index)
                 {
                     case 0: add(out, Instruction.dstore_0); break;
@@ -288,10 +379,8 @@ public class CodeGenerator
                     case 3: add(out, Instruction.dstore_3); break;
                     default: add(out, Instruction.dstore, index);
                 }
-            }
-            else
-            {
-                // long
+                break;
+            case LONG:
                 switch (index)
                 {
                     case 0: add(out, Instruction.lstore_0); break;
@@ -300,53 +389,62 @@ public class CodeGenerator
                     case 3: add(out, Instruction.lstore_3); break;
                     default: add(out, Instruction.lstore, index);
                 }
-            }
-            return 2;
+                break;
+            case FLOAT:
+                switch (index)
+                {
+                    case 0: add(out, Instruction.fstore_0); break;
+                    case 1: add(out, Instruction.fstore_1); break;
+                    case 2: add(out, Instruction.fstore_2); break;
+                    case 3: add(out, Instruction.fstore_3); break;
+                    default: add(out, Instruction.fstore, index);
+                }
+                break;
+            default:
+                switch (index)
+                {
+                    case -1: add(out, Instruction.iconst_m1); break;
+                    case 0: add(out, Instruction.istore_0); break;
+                    case 1: add(out, Instruction.istore_1); break;
+                    case 2: add(out, Instruction.istore_2); break;
+                    case 3: add(out, Instruction.istore_3); break;
+                    default: add(out, Instruction.istore, index);
+                }
+                break;
         }
+        return type.getStackSize();
+    }
 
-        if (name.startsWith("f"))
+    private int pushNumber(ByteBuffer out, Type type, Token literal)
+    {
+        if (isFloatingPoint(type))
         {
-            // float
-            switch (index)
-            {
-                case 0: add(out, Instruction.fstore_0); break;
-                case 1: add(out, Instruction.fstore_1); break;
-                case 2: add(out, Instruction.fstore_2); break;
-                case 3: add(out, Instruction.fstore_3); break;
-                default: add(out, Instruction.fstore, index);
-            }
+            return pushFloat(out, type, literal.getDouble());
         }
-        else
-        {
-            // int
-            switch (index)
-            {
-                case -1: add(out, Instruction.iconst_m1); break;
-                case 0: add(out, Instruction.istore_0); break;
-                case 1: add(out, Instruction.istore_1); break;
-                case 2: add(out, Instruction.istore_2); break;
-                case 3: add(out, Instruction.istore_3); break;
-                default: add(out, Instruction.istore, index);
-            }
-        }
-        return 1;
+
+        return pushInteger(out, type, literal.getLong());
     }
 
-    private int pushNumber(ByteBuffer out, Type type, String value)
+    private int pushZero(ByteBuffer out, Type type)
     {
-        if (type.getName().startsWith("f"))
+        if (isFloatingPoint(type))
         {
-            return pushFloat(out, type, Double.parseDouble(value));
+            return pushFloat(out, type, 0);
         }
 
-        return pushInteger(out, type, Long.parseLong(value));
+        return pushInteger(out, type, 0);
+    }
+
+    private static boolean isFloatingPoint(Type type)
+    {
+        return type.getKind() == Type.Kind.FLOAT || type.getKind() == Type.Kind.DOUBLE;
     }
 
     private int pushInteger(ByteBuffer out, Type type, long value)
     {
-        String name = type.getName();
+        boolean wide = type.getKind() == Type.Kind.LONG;
 
-        if (value <= 1 && name.endsWith("64"))
+        if (value <= 1 && wide)
         {
             if (value == 0)
             {
@@ -357,7 +455,7 @@ public class CodeGenerator
             return 0;
         }
 
-        if (value <= 5 && !name.endsWith("64"))
+        if (value <= 5 && !wide)
         {
             switch ((byte)value)
             {
@@ -373,26 +471,23 @@ public class CodeGenerator
 
         short stackSize;
 
-        switch (type.getName())
+        // the descriptor tells the integer widths apart, which the kind alone does not
+        switch (type.getDescriptor())
         {
-            case "u8":
-            case "s8":
+            case "B":
                 stackSize = 1;
                 add(out, Instruction.bipush, (byte)value);
                 break;
-            case "u16":
-            case "s16":
+            case "S":
                 stackSize = 2;
                 add(out, Instruction.sipush, (byte)(value & 0xff), (byte)((value >> 8) & 0xff));
                 break;
-            case "u32":
-            case "s32":
+            case "I":
                 stackSize = 2;
                 short index = pool.add(new Constant.Integer(pool, (int)value));
                 add(out, Instruction.ldc_w, index);
                 break;
-            case "u64":
-            case "s64":
+            case "J":
                 stackSize = 2;
                 index = pool.add(new Constant.Long(pool, value));
                 add(out, Instruction.ldc2_w, index);
@@ -411,13 +506,13 @@ public class CodeGenerator
 
     private int pushFloat(ByteBuffer out, Type type, double value)
     {
-        switch (type.getName())
+        switch (type.getKind())
         {
-            case "f32":
+            case FLOAT:
                 short index = pool.add(new Constant.Float(pool, (float)value));
                 add(out, Instruction.ldc_w, index);
                 break;
-            case "f64":
+            case DOUBLE:
                 index = pool.add(new Constant.Double(pool, value));
                 add(out, Instruction.ldc2_w, index);
                 break;
@@ -435,15 +530,9 @@ public class CodeGenerator
 
     public void loadNumber(ByteBuffer out, Type type, byte index)
     {
-        String name = type.getName();
-
-        short length;
-
-        if (name.endsWith("64"))
+        switch (type.getKind())
         {
-            if (name.startsWith("f"))
-            {
-                // double
+            case DOUBLE:
                 switch (index)
                 {
                     case 0: add(out, Instruction.dload_0); break;
@@ -452,10 +541,8 @@ public class CodeGenerator
                     case 3: add(out, Instruction.dload_3); break;
                     default: add(out, Instruction.dload, index);
                 }
-            }
-            else
-            {
-                // long
+                break;
+            case LONG:
                 switch (index)
                 {
                     case 0: add(out, Instruction.lload_0); break;
@@ -464,15 +551,8 @@ public class CodeGenerator
                     case 3: add(out, Instruction.lload_3); break;
                     default: add(out, Instruction.lload, index);
                 }
-            }
-
-            length = 2;
-        }
-        else
-        {
-            if (name.startsWith("f"))
-            {
-                // float
+                break;
+            case FLOAT:
                 switch (index)
                 {
                     case 0: add(out, Instruction.fload_0); break;
@@ -481,10 +561,8 @@ public class CodeGenerator
                     case 3: add(out, Instruction.fload_3); break;
                     default: add(out, Instruction.fload, index); break;
                 }
-            }
-            else
-            {
-                // int
+                break;
+            default:
                 switch (index)
                 {
                     case 0: add(out, Instruction.iload_0); break;
@@ -493,18 +571,16 @@ public class CodeGenerator
                     case 3: add(out, Instruction.iload_3); break;
                     default: add(out, Instruction.iload, index); break;
                 }
-            }
-
-            length = 1;
+                break;
         }
 
-        if (this.stackSize < length)
+        if (this.stackSize < type.getStackSize())
         {
-            this.stackSize = length;
+            this.stackSize = (short)type.getStackSize();
         }
     }
 
-    private void returnStatement(ByteBuffer out, Statement.Return stmt)
+    private void returnStatement(ByteBuffer out, Statement.Return stmt) throws CompilerException
     {
         Expression expr = stmt.getExpression();
         if (expr == null)
@@ -515,74 +591,59 @@ public class CodeGenerator
 
         this.expr(out, expr);
 
-        String name = expr.getType().getName();
-
-        if (name.endsWith("64"))
+        switch (expr.getType().getKind())
         {
-            if (name.startsWith("f"))
-            {
-                // double
+            case DOUBLE:
                 add(out, Instruction.dreturn);
-                return;
-            }
-
-            // long
-            add(out, Instruction.lreturn);
-            return;
-        }
-
-        if (name.startsWith("f"))
-        {
-            // floats
-            add(out, Instruction.freturn);
-            return;
+                break;
+            case LONG:
+                add(out, Instruction.lreturn);
+                break;
+            case FLOAT:
+                add(out, Instruction.freturn);
+                break;
+            default:
+                add(out, Instruction.ireturn);
+                break;
         }
-
-        // int
-        add(out, Instruction.ireturn);
     }
 
-    private static final Map<String, Map<Operator, Instruction>> opTable = new HashMap<>();
+    // indexed by kind and then operator, null where the operator does not apply to the kind
+    private static final Instruction[][] opTable = new Instruction[Type.Kind.values().length][Operator.values().length];
 
     static
     {
-        final Map<Operator, Instruction> i32 = new HashMap<>();
-        i32.put(Operator.ADD, Instruction.iadd);
-        i32.put(Operator.SUBTRACT, Instruction.isub);
-        i32.put(Operator.MULTIPLY, Instruction.imul);
-        i32.put(Operator.DIVIDE, Instruction.idiv);
-        i32.put(Operator.MOD, Instruction.irem);
-        i32.put(Operator.LSHIFT, Instruction.ishl);
-        i32.put(Operator.RSHIFT, Instruction.ishr);
-        opTable.put("s32", i32);
-        opTable.put("u32", i32);
-
-        final Map<Operator, Instruction> i64 = new HashMap<>();
-        i64.put(Operator.ADD, Instruction.ladd);
-        i64.put(Operator.SUBTRACT, Instruction.lsub);
-        i64.put(Operator.MULTIPLY, Instruction.lmul);
-        i64.put(Operator.DIVIDE, Instruction.ldiv);
-        i64.put(Operator.MOD, Instruction.lrem);
-        i64.put(Operator.LSHIFT, Instruction.lshl);
-        i64.put(Operator.RSHIFT, Instruction.lshr);
-        opTable.put("s64", i64);
-        opTable.put("u64", i64);
-
-        final Map<Operator, Instruction> f32 = new HashMap<>();
-        f32.put(Operator.ADD, Instruction.fadd);
-        f32.put(Operator.SUBTRACT, Instruction.fsub);
-        f32.put(Operator.MULTIPLY, Instruction.fmul);
-        f32.put(Operator.DIVIDE, Instruction.fdiv);
-        f32.put(Operator.MOD, Instruction.frem);
-        opTable.put("f32", f32);
-
-        final Map<Operator, Instruction> f64 = new HashMap<>();
-        f64.put(Operator.ADD, Instruction.dadd);
-        f64.put(Operator.SUBTRACT, Instruction.dsub);
-        f64.put(Operator.MULTIPLY, Instruction.dmul);
-        f64.put(Operator.DIVIDE, Instruction.ddiv);
-        f64.put(Operator.MOD, Instruction.drem);
-        opTable.put("f64", f64);
+        final Instruction[] i32 = opTable[Type.Kind.INT.ordinal()];
+        i32[Operator.ADD.ordinal()] = Instruction.iadd;
+        i32[Operator.SUBTRACT.ordinal()] = Instruction.isub;
+        i32[Operator.MULTIPLY.ordinal()] = Instruction.imul;
+        i32[Operator.DIVIDE.ordinal()] = Instruction.idiv;
+        i32[Operator.MOD.ordinal()] = Instruction.irem;
+        i32[Operator.LSHIFT.ordinal()] = Instruction.ishl;
+        i32[Operator.RSHIFT.ordinal()] = Instruction.ishr;
+
+        final Instruction[] i64 = opTable[Type.Kind.LONG.ordinal()];
+        i64[Operator.ADD.ordinal()] = Instruction.ladd;
+        i64[Operator.SUBTRACT.ordinal()] = Instruction.lsub;
+        i64[Operator.MULTIPLY.ordinal()] = Instruction.lmul;
+        i64[Operator.DIVIDE.ordinal()] = Instruction.ldiv;
+        i64[Operator.MOD.ordinal()] = Instruction.lrem;
+        i64[Operator.LSHIFT.ordinal()] = Instruction.lshl;
+        i64[Operator.RSHIFT.ordinal()] = Instruction.lshr;
+
+        final Instruction[] f32 = opTable[Type.Kind.FLOAT.ordinal()];
+        f32[Operator.ADD.ordinal()] = Instruction.fadd;
+        f32[Operator.SUBTRACT.ordinal()] = Instruction.fsub;
+        f32[Operator.MULTIPLY.ordinal()] = Instruction.fmul;
+        f32[Operator.DIVIDE.ordinal()] = Instruction.fdiv;
+        f32[Operator.MOD.ordinal()] = Instruction.frem;
+
+        final Instruction[] f64 = opTable[Type.Kind.DOUBLE.ordinal()];
+        f64[Operator.ADD.ordinal()] = Instruction.dadd;
+        f64[Operator.SUBTRACT.ordinal()] = Instruction.dsub;
+        f64[Operator.MULTIPLY.ordinal()] = Instruction.dmul;
+        f64[Operator.DIVIDE.ordinal()] = Instruction.ddiv;
+        f64[Operator.MOD.ordinal()] = Instruction.drem;
     }
 
     private static Instruction getOpInstruction(Type type, Operator operator)
@@ -592,12 +653,12 @@ public class CodeGenerator
             throw new UnsupportedOperationException("only operations on primitive types are supported");
         }
 
-        Map<Operator, Instruction> instructions = opTable.get(type.getName());
-        if (!instructions.containsKey(operator))
+        Instruction instruction = opTable[type.getKind().ordinal()][operator.ordinal()];
+        if (instruction == null)
         {
             throw new UnsupportedOperationException("operator not supported for this type");
         }
 
-        return instructions.get(operator);
+        return instruction;
     }
 }
@@ -52,7 +52,7 @@ public class ConstantPool
 
     public void write(DataOutputStream out) throws IOException
     {
-        out.writeShort((short)pool.size());
+        out.writeShort((short)(pool.size() + 1)); // entries are indexed from 1
         for (Constant c : pool)
         {
             c.write(out);
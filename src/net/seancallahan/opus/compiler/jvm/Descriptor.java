@@ -39,7 +39,7 @@ public class Descriptor
 
     public static Descriptor from(Variable field)
     {
-        return new Descriptor(field, findTerm(field.getType().getName()));
+        return new Descriptor(field, field.getType().getDescriptor());
     }
 
     public static Descriptor from(Function function)
@@ -50,7 +50,7 @@ public class Descriptor
 
         for (Variable param : function.getParameters())
         {
-            b.append(findTerm(param.getType().getName()));
+            b.append(param.getType().getDescriptor());
         }
 
         b.append(')');
@@ -64,7 +64,7 @@ public class Descriptor
         if (function.getReturns().size() == 1)
         {
             Type returns = function.getReturns().get(0).getType();
-            b.append(findTerm(returns.getName()));
+            b.append(returns.getDescriptor());
         }
         else
         {
@@ -73,38 +73,4 @@ public class Descriptor
 
         return new Descriptor(function, b.toString());
     }
-
-    private static String findTerm(String type)
-    {
-        boolean array = type.startsWith("[]");
-        if (array)
-        {
-            return "[" + findTerm(type.substring(2));
-        }
-
-        switch (type)
-        {
-            case "bool":
-                return "Z";
-            case "u8":
-            case "s8":
-                return "B";
-            case "u16":
-            case "s16":
-                return "S";
-            case "u32":
-            case "s32":
-                return "I";
-            case "u64":
-            case "s64":
-                return "J";
-            case "f32":
-                return "F";
-            case "f64":
-                return "D";
-            default:
-                // assume reference
-                return "L" + type + ";";
-        }
-    }
 }
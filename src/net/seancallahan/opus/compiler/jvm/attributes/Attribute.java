@@ -21,8 +21,10 @@ public abstract class Attribute
 
     public void write(ByteBuffer out)
     {
+        body.flip();
+
         out.putShort(nameIndex);
-        out.putInt((short)body.position());
+        out.putInt(body.remaining());
         out.put(body);
         body.clear();
     }
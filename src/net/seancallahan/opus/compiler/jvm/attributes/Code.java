@@ -46,7 +46,8 @@ public class Code extends AttributeParent
         body.putShort(maxStack);
         body.putShort(maxLocals);
 
-        body.putInt(code.position());
+        code.flip();
+        body.putInt(code.remaining());
         body.put(code);
 
         body.putShort((short)0); // exception_table_length
@@ -0,0 +1,40 @@
+package net.seancallahan.opus.compiler.parser;
+
+final class AstFormat
+{
+    static final int MAGIC = 0x4F415354; // "OAST"
+    static final int VERSION = 3;
+
+    // declarations
+    static final byte IMPORT = 1;
+    static final byte CONSTANT = 2;
+    static final byte FUNCTION = 3;
+    static final byte METHOD = 4;
+    static final byte CLASS = 5;
+
+    // statements, 0 marks a missing one
+    static final byte ASSIGNMENT = 1;
+    static final byte CONSTANT_STATEMENT = 2;
+    static final byte RETURN = 3;
+    static final byte IMPORT_STATEMENT = 4;
+    static final byte FOR = 5;
+    static final byte IF = 6;
+    static final byte VARIABLE_TYPED = 7;
+    static final byte VARIABLE_DEFINED = 8;
+    static final byte SIMPLE_EXPRESSION = 9;
+
+    // expressions, 0 marks a missing one
+    static final byte BINARY = 1;
+    static final byte FIELD_REFERENCE = 2;
+    static final byte FUNCTION_CALL = 3;
+    static final byte GROUP = 4;
+    static final byte LITERAL = 5;
+    static final byte INSTANTIATION = 6;
+    static final byte UNARY = 7;
+
+    static final byte NONE = 0;
+
+    private AstFormat()
+    {
+    }
+}
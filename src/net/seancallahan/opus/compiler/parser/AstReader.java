@@ -0,0 +1,460 @@
+package net.seancallahan.opus.compiler.parser;
+
+import net.seancallahan.opus.compiler.CompilerException;
+import net.seancallahan.opus.compiler.Function;
+import net.seancallahan.opus.compiler.Lexer;
+import net.seancallahan.opus.compiler.Operator;
+import net.seancallahan.opus.compiler.Package;
+import net.seancallahan.opus.compiler.Scope;
+import net.seancallahan.opus.compiler.SourceFile;
+import net.seancallahan.opus.compiler.Symbol;
+import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.compiler.TokenBuffer;
+import net.seancallahan.opus.compiler.TokenType;
+import net.seancallahan.opus.lang.Class;
+import net.seancallahan.opus.lang.Declaration;
+import net.seancallahan.opus.lang.Method;
+import net.seancallahan.opus.lang.Type;
+import net.seancallahan.opus.lang.Variable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static net.seancallahan.opus.compiler.parser.AstFormat.*;
+
+public class AstReader
+{
+    private static final TokenType[] tokenTypes = TokenType.values();
+    private static final Operator[] operators = Operator.values();
+
+    // the file until its checksum has been checked, and then what it covers
+    private DataInputStream in;
+
+    private String[] names;
+    private Token[] tokens;
+    private int nextToken;
+
+    private final ExpressionArena arena = new ExpressionArena();
+
+    private Scope global;
+    private Body current;
+
+    public AstReader(DataInputStream in)
+    {
+        this.in = in;
+    }
+
+    // rebuilds the parser's declarations as the parser would have left them without parsing the source; only the
+    // tokens the tree refers to are lexed again
+    public Parser read(SourceFile file) throws IOException, CompilerException
+    {
+        if (in.readInt() != MAGIC)
+        {
+            throw new IOException("not an ast file");
+        }
+
+        int version = in.readUnsignedShort();
+        if (version != VERSION)
+        {
+            throw new IOException(String.format("unsupported ast version %d, expecting %d", version, VERSION));
+        }
+
+        TokenBuffer original = file.getLexer().getTokens();
+        byte[] source = original.getSource();
+
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        if (readVarInt(in) != source.length || in.readInt() != (int) crc.getValue())
+        {
+            throw new IOException("ast file is out of date with its source");
+        }
+
+        // the rest is only read once it is known to be as it was written
+        int length = readVarInt(in);
+        int expected = in.readInt();
+        byte[] body = in.readNBytes(Math.max(length, 0));
+        crc.reset();
+        crc.update(body);
+        if (body.length != length || (int) crc.getValue() != expected)
+        {
+            throw new IOException("corrupt ast");
+        }
+        in = new DataInputStream(new ByteArrayInputStream(body));
+
+        // nothing is sized from a count in the file, so a bad one runs into the end of it rather than out of memory
+        int nameCount = readVarInt(in);
+        List<String> nameList = new ArrayList<>();
+        for (int i = 0; i < nameCount; i++)
+        {
+            nameList.add(in.readUTF());
+        }
+        names = nameList.toArray(new String[0]);
+
+        readTokens(new Lexer(original.getFile(), source));
+
+        global = new Scope(null);
+        Parser parser = new Parser(file, List.of(), global);
+
+        parser.setPackage(file.lookupPackage(name(readVarInt(in))));
+
+        // the package can be shared with other files, so nothing is declared in it until the whole file has been read
+        int count = readVarInt(in);
+        List<Declaration> declarations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            declarations.add(declaration(parser.getPackage()));
+        }
+
+        // the tree came from a file that parsed, so every declaration has its own name; checked before any of them
+        // are added, so a bad file leaves nothing behind
+        Set<Symbol> declared = new HashSet<>();
+        for (Declaration declaration : declarations)
+        {
+            if (declaration.getName() == null || !declared.add(declaration.getName().getSymbol()))
+            {
+                throw new IOException("corrupt ast");
+            }
+        }
+
+        for (Declaration declaration : declarations)
+        {
+            parser.addDeclaration(declaration);
+        }
+
+        return parser;
+    }
+
+    private void readTokens(Lexer lexer) throws IOException
+    {
+        int count = readVarInt(in);
+        List<Token> list = new ArrayList<>();
+
+        int offset = 0;
+        for (int i = 0; i < count; i++)
+        {
+            long value = readVarLong(in);
+            if ((value & 1) != 0)
+            {
+                TokenType type = tokenTypes[check(in.readUnsignedByte(), tokenTypes.length)];
+                list.add(new Token(type, name(readVarInt(in))));
+                continue;
+            }
+
+            offset += (int) (value >> 1);
+            if (offset < 0 || offset > lexer.getTokens().getSource().length)
+            {
+                throw new IOException("ast file does not match its source");
+            }
+
+            int index;
+            try
+            {
+                index = lexer.lexAt(offset);
+            }
+            catch (Lexer.Error e)
+            {
+                throw new IOException("ast file does not match its source", e);
+            }
+
+            // one view per token, so a token shared between nodes stays shared
+            list.add(lexer.getTokens().get(index));
+        }
+
+        tokens = list.toArray(new Token[0]);
+    }
+
+    private Declaration declaration(Package pkg) throws IOException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+            case IMPORT:
+                return new Statement.Import(null, token());
+            case CONSTANT:
+                return constant();
+            case FUNCTION:
+            {
+                Function function = new Function(token(), Scope.childOf(global));
+                function(function);
+                return function;
+            }
+            case METHOD:
+            {
+                Token parentName = token();
+                Method method = new Method(parentName, token(), Scope.childOf(global), false);
+                function(method);
+                return method;
+            }
+            case CLASS:
+            {
+                Class clazz = new Class(pkg, token());
+                variables(clazz.getFields());
+                return clazz;
+            }
+            default:
+                throw new IOException("unknown declaration tag " + tag);
+        }
+    }
+
+    private void function(Function function) throws IOException
+    {
+        variables(function.getParameters());
+        variables(function.getReturns());
+
+        for (Variable param : function.getParameters())
+        {
+            function.getBody().getScope().put(param.getName().getSymbol(), param);
+        }
+
+        current = function.getBody();
+        statements(current);
+        current = null;
+    }
+
+    private void variables(List<Variable> variables) throws IOException
+    {
+        int count = readVarInt(in);
+        for (int i = 0; i < count; i++)
+        {
+            Token name = token();
+            Type type = type();
+            variables.add(name != null ? new Variable(name, type) : new Variable(type));
+        }
+    }
+
+    private Statement.Constant constant() throws IOException
+    {
+        Token name = token();
+        Type type = type();
+        return new Statement.Constant(current, name, type, expression());
+    }
+
+    private Body body() throws IOException
+    {
+        Body parent = current;
+        Body body = new Body(parent.getScope().copy());
+
+        current = body;
+        statements(body);
+        current = parent;
+
+        return body;
+    }
+
+    private void statements(Body body) throws IOException
+    {
+        int count = readVarInt(in);
+        for (int i = 0; i < count; i++)
+        {
+            body.getStatements().add(statement());
+        }
+    }
+
+    private Statement statement() throws IOException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+            case NONE:
+                return null;
+            case ASSIGNMENT:
+            {
+                Token name = token();
+                return new Statement.Assignment(current, name, expression());
+            }
+            case CONSTANT_STATEMENT:
+                return constant();
+            case RETURN:
+                return new Statement.Return(current, expression());
+            case IMPORT_STATEMENT:
+                return new Statement.Import(current, token());
+            case FOR:
+            {
+                Statement index = statement();
+                if (index != null && !(index instanceof Statement.Assignment))
+                {
+                    throw new IOException("corrupt ast");
+                }
+                Expression condition = expression();
+                Statement counter = statement();
+                return new Statement.For(current, (Statement.Assignment) index, condition, counter, body());
+            }
+            case IF:
+            {
+                Expression condition = expression();
+                return new Statement.If(current, condition, body());
+            }
+            case VARIABLE_TYPED:
+            {
+                Token name = token();
+                Statement.VariableDeclaration declaration = new Statement.VariableDeclaration(current, name, type());
+                current.getScope().add(declaration);
+                return declaration;
+            }
+            case VARIABLE_DEFINED:
+            {
+                Token name = token();
+                Statement.VariableDeclaration declaration = new Statement.VariableDeclaration(current, name, expression());
+                current.getScope().add(declaration);
+                return declaration;
+            }
+            case SIMPLE_EXPRESSION:
+                return new Statement.SimpleExpression(current, expression());
+            default:
+                throw new IOException("unknown statement tag " + tag);
+        }
+    }
+
+    private Expression expression() throws IOException
+    {
+        return expression(in.readByte());
+    }
+
+    private Expression expression(byte tag) throws IOException
+    {
+        switch (tag)
+        {
+            case NONE:
+                return null;
+            case BINARY:
+            {
+                // the operators down a chain's left side come first, outermost first
+                List<Operator> spine = new ArrayList<>();
+                do
+                {
+                    spine.add(operator());
+                    tag = in.readByte();
+                } while (tag == BINARY);
+
+                Expression left = expression(tag);
+                for (int i = spine.size() - 1; i >= 0; i--)
+                {
+                    left = arena.binary(left, spine.get(i), expression());
+                }
+                return left;
+            }
+            case FIELD_REFERENCE:
+            {
+                Token callee = token();
+                return new Expression.FieldReference(callee, token());
+            }
+            case FUNCTION_CALL:
+            {
+                Token callee = token();
+                Token function = token();
+                int count = readVarInt(in);
+                List<Expression> arguments = new ArrayList<>();
+                for (int i = 0; i < count; i++)
+                {
+                    arguments.add(expression());
+                }
+                return new Expression.FunctionCall(callee, function, arguments);
+            }
+            case GROUP:
+                return new Expression.Group(expression());
+            case LITERAL:
+            {
+                Token token = token();
+                if (token == null)
+                {
+                    throw new IOException("corrupt ast");
+                }
+                return arena.literal(token);
+            }
+            case INSTANTIATION:
+            {
+                Token className = token();
+                int count = readVarInt(in);
+                List<Token> names = new ArrayList<>();
+                List<Expression> values = new ArrayList<>();
+                for (int i = 0; i < count; i++)
+                {
+                    names.add(token());
+                    values.add(expression());
+                }
+                return new Expression.Instantiation(className, names.toArray(new Token[0]), values.toArray(new Expression[0]));
+            }
+            case UNARY:
+            {
+                Operator operator = operator();
+                return new Expression.Unary(operator, expression());
+            }
+            default:
+                throw new IOException("unknown expression tag " + tag);
+        }
+    }
+
+    private Type type() throws IOException
+    {
+        int name = readVarInt(in);
+        return name > 0 ? Type.of(name(name - 1)) : null;
+    }
+
+    private String name(int index) throws IOException
+    {
+        return names[check(index, names.length)];
+    }
+
+    private Operator operator() throws IOException
+    {
+        return operators[check(in.readUnsignedByte(), operators.length)];
+    }
+
+    // the file matched its source, but it can still have been cut short or damaged, which mustn't stop a build
+    private static int check(int index, int length) throws IOException
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IOException("corrupt ast");
+        }
+        return index;
+    }
+
+    private Token token() throws IOException
+    {
+        int index = readVarInt(in);
+        if (index == 0)
+        {
+            return null;
+        }
+        if (index == 1)
+        {
+            return tokens[check(nextToken++, tokens.length)];
+        }
+        return tokens[check(index - 2, tokens.length)];
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+    }
+}
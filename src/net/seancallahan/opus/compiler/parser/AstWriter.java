@@ -0,0 +1,394 @@
+package net.seancallahan.opus.compiler.parser;
+
+import net.seancallahan.opus.compiler.Function;
+import net.seancallahan.opus.compiler.SourceFile;
+import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.lang.Class;
+import net.seancallahan.opus.lang.Declaration;
+import net.seancallahan.opus.lang.Method;
+import net.seancallahan.opus.lang.Type;
+import net.seancallahan.opus.lang.Variable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static net.seancallahan.opus.compiler.parser.AstFormat.*;
+
+public class AstWriter
+{
+    private final DataOutputStream out;
+
+    // tokens and names are written once up front and referenced by index from the tree
+    private final Map<Token, Integer> tokens = new IdentityHashMap<>();
+    private final List<Token> tokenList = new ArrayList<>();
+    private final Map<String, Integer> names = new HashMap<>();
+    private final List<String> nameList = new ArrayList<>();
+
+    private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+    private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+    private final ByteArrayOutputStream treeBytes = new ByteArrayOutputStream();
+    private final DataOutputStream tree = new DataOutputStream(treeBytes);
+
+    public AstWriter(DataOutputStream out)
+    {
+        this.out = out;
+    }
+
+    public void write(SourceFile file) throws IOException
+    {
+        Parser parser = file.getParser();
+        byte[] source = file.getLexer().getTokens().getSource();
+
+        writeVarInt(tree, name(parser.getPackage().getName()));
+
+        writeVarInt(tree, parser.getDeclarations().size());
+        for (Declaration declaration : parser.getDeclarations().values())
+        {
+            declaration(declaration);
+        }
+
+        // names first, the tokens the compiler made up refer to them
+        for (Token token : tokenList)
+        {
+            if (token.getBuffer() == null)
+            {
+                name(token.getValue());
+            }
+        }
+
+        writeVarInt(body, nameList.size());
+        for (String name : nameList)
+        {
+            body.writeUTF(name);
+        }
+
+        // a token from the source is only its offset, the rest of it is lexed again from the source when it is read
+        writeVarInt(body, tokenList.size());
+        int previous = 0;
+        for (Token token : tokenList)
+        {
+            if (token.getBuffer() == null)
+            {
+                // a token made up by the compiler rather than read from the source
+                writeVarLong(body, 1);
+                body.writeByte(token.getType().ordinal());
+                writeVarInt(body, names.get(token.getValue()));
+                continue;
+            }
+
+            // the low bit tells the two apart
+            writeVarLong(body, (long) (token.getOffset() - previous) << 1);
+            previous = token.getOffset();
+        }
+
+        treeBytes.writeTo(body);
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        CRC32 crc = new CRC32();
+        crc.update(source);
+        writeVarInt(out, source.length);
+        out.writeInt((int) crc.getValue());
+
+        // the rest has a checksum of its own, so a damaged file is caught before anything is read from it
+        crc.reset();
+        crc.update(bodyBytes.toByteArray());
+        writeVarInt(out, bodyBytes.size());
+        out.writeInt((int) crc.getValue());
+
+        bodyBytes.writeTo(out);
+        out.flush();
+    }
+
+    private void declaration(Declaration declaration) throws IOException
+    {
+        if (declaration instanceof Statement.Import)
+        {
+            tree.writeByte(IMPORT);
+            token(((Statement.Import) declaration).getPath());
+        }
+        else if (declaration instanceof Statement.Constant)
+        {
+            tree.writeByte(CONSTANT);
+            constant((Statement.Constant) declaration);
+        }
+        else if (declaration instanceof Method)
+        {
+            Method method = (Method) declaration;
+            tree.writeByte(METHOD);
+            token(method.getParentName());
+            function(method);
+        }
+        else if (declaration instanceof Function)
+        {
+            tree.writeByte(FUNCTION);
+            function((Function) declaration);
+        }
+        else if (declaration instanceof Class)
+        {
+            Class clazz = (Class) declaration;
+            tree.writeByte(CLASS);
+            token(clazz.getName());
+            variables(clazz.getFields());
+        }
+        else
+        {
+            throw new UnsupportedOperationException("cannot write declaration " + declaration.getClass().getSimpleName());
+        }
+    }
+
+    private void function(Function function) throws IOException
+    {
+        token(function.getName());
+        variables(function.getParameters());
+        variables(function.getReturns());
+        body(function.getBody());
+    }
+
+    private void variables(List<Variable> variables) throws IOException
+    {
+        writeVarInt(tree, variables.size());
+        for (Variable variable : variables)
+        {
+            token(variable.getName());
+            type(variable.getType());
+        }
+    }
+
+    private void constant(Statement.Constant constant) throws IOException
+    {
+        token(constant.getName());
+        type(constant.getType());
+        expression(constant.getValue());
+    }
+
+    private void body(Body body) throws IOException
+    {
+        writeVarInt(tree, body.getStatements().size());
+        for (Statement statement : body.getStatements())
+        {
+            statement(statement);
+        }
+    }
+
+    private void statement(Statement statement) throws IOException
+    {
+        if (statement == null)
+        {
+            tree.writeByte(NONE);
+            return;
+        }
+
+        switch (statement.getKind())
+        {
+            case ASSIGNMENT:
+            {
+                Statement.Assignment assignment = (Statement.Assignment) statement;
+                tree.writeByte(ASSIGNMENT);
+                token(assignment.getName());
+                expression(assignment.getExpression());
+                break;
+            }
+            case CONSTANT:
+                tree.writeByte(CONSTANT_STATEMENT);
+                constant((Statement.Constant) statement);
+                break;
+            case RETURN:
+                tree.writeByte(RETURN);
+                expression(((Statement.Return) statement).getExpression());
+                break;
+            case IMPORT:
+                tree.writeByte(IMPORT_STATEMENT);
+                token(((Statement.Import) statement).getPath());
+                break;
+            case FOR:
+            {
+                Statement.For loop = (Statement.For) statement;
+                tree.writeByte(FOR);
+                statement(loop.getIndex());
+                expression(loop.getCondition());
+                statement(loop.getCounter());
+                body(loop.getBody());
+                break;
+            }
+            case IF:
+            {
+                Statement.If branch = (Statement.If) statement;
+                tree.writeByte(IF);
+                expression(branch.getCondition());
+                body(branch.getBody());
+                break;
+            }
+            case VARIABLE_DECLARATION:
+            {
+                Statement.VariableDeclaration declaration = (Statement.VariableDeclaration) statement;
+                if (declaration.getExpression() == null)
+                {
+                    tree.writeByte(VARIABLE_TYPED);
+                    token(declaration.getName());
+                    type(declaration.getVariable().getType());
+                }
+                else
+                {
+                    tree.writeByte(VARIABLE_DEFINED);
+                    token(declaration.getName());
+                    expression(declaration.getExpression());
+                }
+                break;
+            }
+            case SIMPLE_EXPRESSION:
+                tree.writeByte(SIMPLE_EXPRESSION);
+                expression(((Statement.SimpleExpression) statement).getExpression());
+                break;
+        }
+    }
+
+    private void expression(Expression expression) throws IOException
+    {
+        if (expression == null)
+        {
+            tree.writeByte(NONE);
+            return;
+        }
+
+        switch (expression.getKind())
+        {
+            case BINARY:
+            {
+                // a long chain is written without recursing on it, in the same order as node by node
+                List<Expression.Binary> spine = ((Expression.Binary) expression).getLeftSpine();
+                for (int i = spine.size() - 1; i >= 0; i--)
+                {
+                    tree.writeByte(BINARY);
+                    tree.writeByte(spine.get(i).getOperator().ordinal());
+                }
+
+                expression(spine.get(0).getLeft());
+                for (Expression.Binary binary : spine)
+                {
+                    expression(binary.getRight());
+                }
+                break;
+            }
+            case FIELD_REFERENCE:
+            {
+                Expression.FieldReference reference = (Expression.FieldReference) expression;
+                tree.writeByte(FIELD_REFERENCE);
+                token(reference.getCallee());
+                token(reference.getName());
+                break;
+            }
+            case FUNCTION_CALL:
+            {
+                Expression.FunctionCall call = (Expression.FunctionCall) expression;
+                tree.writeByte(FUNCTION_CALL);
+                token(call.getCallee());
+                token(call.getFunction());
+                writeVarInt(tree, call.getArguments().size());
+                for (Expression argument : call.getArguments())
+                {
+                    expression(argument);
+                }
+                break;
+            }
+            case GROUP:
+                tree.writeByte(GROUP);
+                expression(((Expression.Group) expression).getInner());
+                break;
+            case LITERAL:
+                tree.writeByte(LITERAL);
+                token(((Expression.Literal) expression).getToken());
+                break;
+            case INSTANTIATION:
+            {
+                Expression.Instantiation instantiation = (Expression.Instantiation) expression;
+                tree.writeByte(INSTANTIATION);
+                token(instantiation.getClassName());
+                writeVarInt(tree, instantiation.getFieldCount());
+                for (int i = 0; i < instantiation.getFieldCount(); i++)
+                {
+                    token(instantiation.getFieldName(i));
+                    expression(instantiation.getFieldValue(i));
+                }
+                break;
+            }
+            case UNARY:
+            {
+                Expression.Unary unary = (Expression.Unary) expression;
+                tree.writeByte(UNARY);
+                tree.writeByte(unary.getOperator().ordinal());
+                expression(unary.getRight());
+                break;
+            }
+        }
+    }
+
+    private void type(Type type) throws IOException
+    {
+        writeVarInt(tree, type == null ? 0 : name(type.getName()) + 1);
+    }
+
+    private void token(Token token) throws IOException
+    {
+        if (token == null)
+        {
+            writeVarInt(tree, 0);
+            return;
+        }
+
+        // tokens are numbered in the order the tree first uses them, so a token that has not been seen yet is
+        // always the next one and is written as 1; one that has is written as its index plus two
+        Integer index = tokens.get(token);
+        if (index == null)
+        {
+            tokens.put(token, tokenList.size());
+            tokenList.add(token);
+            writeVarInt(tree, 1);
+            return;
+        }
+        writeVarInt(tree, index + 2);
+    }
+
+    private int name(String name)
+    {
+        Integer index = names.get(name);
+        if (index == null)
+        {
+            index = nameList.size();
+            names.put(name, index);
+            nameList.add(name);
+        }
+        return index;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        // zigzag so that small negative numbers stay short
+        value = (value << 1) ^ (value >> 63);
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -2,8 +2,6 @@ package net.seancallahan.opus.compiler.parser;
 
 import net.seancallahan.opus.compiler.Scope;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,16 +24,4 @@ public class Body
     {
         return statements;
     }
-
-    public void writeTo(DataOutputStream out) throws IOException
-    {
-        out.writeInt(statements.size());
-        for (Statement statement : statements)
-        {
-            if (statement != null)
-            {
-                statement.writeTo(out);
-            }
-        }
-    }
 }
@@ -1,34 +1,42 @@
 package net.seancallahan.opus.compiler.parser;
 
+import net.seancallahan.opus.compiler.Function;
 import net.seancallahan.opus.compiler.Operator;
-import net.seancallahan.opus.compiler.Scope;
 import net.seancallahan.opus.compiler.SourceFile;
 import net.seancallahan.opus.compiler.Token;
 import net.seancallahan.opus.compiler.TokenType;
-import net.seancallahan.opus.compiler.semantics.Resolvable;
-import net.seancallahan.opus.compiler.semantics.Resolver;
+import net.seancallahan.opus.lang.Declaration;
 import net.seancallahan.opus.lang.Type;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
-public abstract class Expression implements Resolvable
+public abstract sealed class Expression
 {
-    private final Scope scope;
+    // NOTE: an expression keeps no scope of its own; passes take it from the block the statement is in
+    private final Kind kind;
     private Type type;
 
-    protected Expression(Scope scope)
+    private Expression(Kind kind)
     {
-        this.scope = scope;
+        this.kind = kind;
+    }
+
+    // passes switch on this rather than testing each node class in turn
+    public final Kind getKind()
+    {
+        return kind;
     }
 
     public abstract SourceFile.Position getStartPosition();
 
     public Type getType()
+    {
+        return resolved(type);
+    }
+
+    private static Type resolved(Type type)
     {
         if (type == null)
         {
@@ -42,67 +50,33 @@ public abstract class Expression implements Resolvable
         this.type = type;
     }
 
-    public Scope getScope()
-    {
-        return scope;
-    }
-
     public static Expression parse(ParserContext context) throws SyntaxException
     {
-        return equals(context);
+        return binary(context, 1);
     }
 
-    private static Expression equals(ParserContext context) throws SyntaxException
+    private static Expression binary(ParserContext context, int minimum) throws SyntaxException
     {
-        Expression left = comparison(context);
-
-        while (context.matches(Operator.NEQ, Operator.EQ))
-        {
-            Operator operator = context.getIterator().next().getOperator();
-            Expression right = comparison(context);
-            left = new Binary(context.getCurrentBody().getScope(), left, operator, right);
-        }
-
-        return left;
-    }
-
-    private static Expression comparison(ParserContext context) throws SyntaxException
-    {
-        Expression left = addition(context);
-
-        while (context.matches(Operator.GT, Operator.GEQ, Operator.LT, Operator.LEQ, Operator.AND, Operator.OR))
-        {
-            Operator operator = context.getIterator().next().getOperator();
-            Expression right = addition(context);
-            left = new Binary(context.getCurrentBody().getScope(), left, operator, right);
-        }
-
-        return left;
-    }
-
-    private static Expression addition(ParserContext context) throws SyntaxException
-    {
-        Expression left = multiplication(context);
+        Expression left = unary(context);
 
-        while (context.matches(Operator.ADD, Operator.SUBTRACT))
+        // every level is left associative, so the right operand may only hold tighter binding operators
+        while (true)
         {
-            Operator operator = context.getIterator().next().getOperator();
-            Expression right = multiplication(context);
-            left = new Binary(context.getCurrentBody().getScope(), left, operator, right);
-        }
-
-        return left;
-    }
+            Token next = context.getIterator().peek();
+            if (next.getType() != TokenType.OPERATOR)
+            {
+                break;
+            }
 
-    private static Expression multiplication(ParserContext context) throws SyntaxException
-    {
-        Expression left = unary(context);
+            int level = precedence[next.getOperator().ordinal()];
+            if (level < minimum)
+            {
+                break;
+            }
 
-        while (context.matches(Operator.DIVIDE, Operator.MULTIPLY, Operator.MOD))
-        {
-            Operator operator = context.getIterator().next().getOperator();
-            Expression right = unary(context);
-            left = new Binary(context.getCurrentBody().getScope(), left, operator, right);
+            context.getIterator().skip(1);
+            Expression right = operand(context, binary(context, level + 1));
+            left = context.getArena().binary(left, next.getOperator(), right);
         }
 
         return left;
@@ -110,11 +84,12 @@ public abstract class Expression implements Resolvable
 
     private static Expression unary(ParserContext context) throws SyntaxException
     {
-        if (context.matches(Operator.NOT))
+        Token next = context.getIterator().peek();
+        if (next.getType() == TokenType.OPERATOR && next.getOperator() == Operator.NOT)
         {
-            Operator operator = context.getIterator().next().getOperator();
-            Expression right = unary(context);
-            return new Unary(context.getCurrentBody().getScope(), operator, right);
+            context.getIterator().skip(1);
+            Expression right = operand(context, unary(context));
+            return new Unary(next.getOperator(), right);
         }
 
         return primary(context);
@@ -122,49 +97,64 @@ public abstract class Expression implements Resolvable
 
     private static Expression primary(ParserContext context) throws SyntaxException
     {
-        if (context.matches(TokenType.NAME, TokenType.THIS))
-        {
-            Token name = context.getIterator().next();
-
-            if (context.has(TokenType.DOT))
-            {
-                return member(context, name);
-            }
-
-            if (context.has(TokenType.LEFT_PAREN))
-            {
-                return method(context, null, name);
-            }
-
-            return new Literal(context.getCurrentBody().getScope(), name);
-        }
-
-        if (context.matches(TokenType.LITERAL,TokenType.NIL, TokenType.TRUE, TokenType.FALSE))
-        {
-            return new Literal(context.getCurrentBody().getScope(), context);
-        }
-
-        if (context.has(TokenType.CREATE))
-        {
-            Token name = context.expect(TokenType.NAME);
-            context.expect(TokenType.LEFT_BRACE);
-            return createNew(context, name);
+        if (context.atDeclaration())
+        {
+            // the expression was cut short, and what follows is the next declaration rather than an operand
+            return null;
+        }
+
+        switch (context.getIterator().peek().getType())
+        {
+            case NAME:
+            case THIS:
+                Token name = context.getIterator().next();
+
+                if (context.has(TokenType.DOT))
+                {
+                    return member(context, name);
+                }
+
+                if (context.has(TokenType.LEFT_PAREN))
+                {
+                    return method(context, null, name);
+                }
+
+                return context.getArena().literal(name);
+            case LITERAL:
+            case NIL:
+            case TRUE:
+            case FALSE:
+                return context.getArena().literal(context.getIterator().next());
+            case CREATE:
+                context.getIterator().skip(1);
+                Token clazz = context.expect(TokenType.NAME);
+                context.expect(TokenType.LEFT_BRACE);
+                return createNew(context, clazz);
+            case LEFT_PAREN:
+                context.getIterator().skip(1);
+                Expression group = operand(context, parse(context));
+                context.expect(TokenType.RIGHT_PAREN);
+                return new Group(group);
+            default:
+                return null;
         }
+    }
 
-        if (context.matches(TokenType.LEFT_PAREN))
+    // primary() gives null when there is no expression at all, which is only fine where one is optional
+    private static Expression operand(ParserContext context, Expression expression) throws SyntaxException
+    {
+        if (expression == null)
         {
-            context.getIterator().skip(1);
-            Expression group = parse(context);
-            context.expect(TokenType.RIGHT_PAREN);
-            return new Group(context.getCurrentBody().getScope(), group);
+            Token next = context.getIterator().peek();
+            throw new SyntaxException(String.format("unexpected %s, expecting an expression", next.getType()), next);
         }
-
-        return null;
+        return expression;
     }
 
     private static Expression createNew(ParserContext context, Token clazz) throws SyntaxException
     {
-        Map<Token, Expression> fields = new HashMap<>();
+        List<Token> names = new ArrayList<>();
+        List<Expression> values = new ArrayList<>();
 
         if (!context.has(TokenType.RIGHT_BRACE))
         {
@@ -176,19 +166,20 @@ public abstract class Expression implements Resolvable
 
                 Expression expression = parse(context);
 
-                fields.put(field, expression);
+                names.add(field);
+                values.add(expression);
             } while (context.has(TokenType.COMMA));
             context.expect(TokenType.RIGHT_BRACE);
         }
 
-        return new Instantiation(context.getCurrentBody().getScope(), clazz, fields);
+        return new Instantiation(clazz, names.toArray(new Token[0]), values.toArray(new Expression[0]));
     }
 
     public static Expression member(ParserContext context, Token callee) throws SyntaxException
     {
         Token name = context.expect(TokenType.NAME);
 
-        if (!context.getCurrentBody().getScope().contains(name.getValue()))
+        if (!context.getCurrentBody().getScope().contains(name.getSymbol()))
         {
             throw new SyntaxException(String.format("class '%s' does not have the member '%s'", callee.getValue(), name.getValue()), name);
         }
@@ -198,7 +189,7 @@ public abstract class Expression implements Resolvable
             return method(context, callee, name);
         }
 
-        return new FieldReference(context.getCurrentBody().getScope(), callee, name);
+        return new FieldReference(callee, name);
     }
 
     public static Expression method(ParserContext context, Token callee, Token name) throws SyntaxException
@@ -214,44 +205,72 @@ public abstract class Expression implements Resolvable
             context.expect(TokenType.RIGHT_PAREN);
         }
 
-        return new FunctionCall(context.getCurrentBody().getScope(), callee, name, arguments);
+        return new FunctionCall(callee, name, arguments);
     }
 
     public abstract void print();
 
-    public void writeTo(DataOutputStream out) throws IOException
-    {
-        // NOTE: maybe use an enum to store expression types.
-        out.writeUTF(getClass().getSimpleName());
-    }
-
+    // a view over a row of the arena, so there may be many of these for one binary
     public static final class Binary extends Expression
     {
-        private final Expression left;
-        private final Operator operator;
-        private final Expression right;
+        private final ExpressionArena arena;
+        private final int index;
 
-        private Binary(Scope scope, Expression left, Operator operator, Expression right)
+        Binary(ExpressionArena arena, int index)
         {
-            super(scope);
-            this.left = left;
-            this.operator = operator;
-            this.right = right;
+            super(Kind.BINARY);
+            this.arena = arena;
+            this.index = index;
+        }
+
+        ExpressionArena getArena()
+        {
+            return arena;
+        }
+
+        int getIndex()
+        {
+            return index;
         }
 
         public Expression getLeft()
         {
-            return left;
+            return arena.getLeft(index);
         }
 
         public Operator getOperator()
         {
-            return operator;
+            return arena.getOperator(index);
         }
 
         public Expression getRight()
         {
-            return right;
+            return arena.getRight(index);
+        }
+
+        @Override
+        public Type getType()
+        {
+            return resolved(arena.getBinaryType(index));
+        }
+
+        @Override
+        public void setType(Type type)
+        {
+            arena.setBinaryType(index, type);
+        }
+
+        // the binaries down the left side of this one, innermost first. Operators of one precedence level chain
+        // to the left, so a long generated sum is walked by looping over this rather than by recursing into it
+        public List<Binary> getLeftSpine()
+        {
+            List<Binary> spine = new ArrayList<>();
+            for (int next = index; next >= 0; next = arena.getLeftBinary(next))
+            {
+                spine.add(next == index ? this : new Binary(arena, next));
+            }
+            Collections.reverse(spine);
+            return spine;
         }
 
         @Override
@@ -284,26 +303,15 @@ public abstract class Expression implements Resolvable
             System.out.println();*/
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
-        {
-            super.writeTo(out);
-            getOperator().writeTo(out);
-            getLeft().writeTo(out);
-            getRight().writeTo(out);
-        }
-
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(left);
-            resolver.resolve(right);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
-            return left.getStartPosition();
+            int leftmost = index;
+            while (arena.getLeftBinary(leftmost) >= 0)
+            {
+                leftmost = arena.getLeftBinary(leftmost);
+            }
+            return arena.getLeft(leftmost).getStartPosition();
         }
     }
 
@@ -312,9 +320,12 @@ public abstract class Expression implements Resolvable
         private final Token callee;
         private final Token name;
 
-        private FieldReference(Scope scope, Token callee, Token name)
+        // set by semantic analysis to what the callee refers to
+        private Declaration declaration;
+
+        FieldReference(Token callee, Token name)
         {
-            super(scope);
+            super(Kind.FIELD_REFERENCE);
             this.callee = callee;
             this.name = name;
         }
@@ -329,25 +340,20 @@ public abstract class Expression implements Resolvable
             return name;
         }
 
-        @Override
-        public void print()
+        public Declaration getDeclaration()
         {
-
+            return declaration;
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
+        public void setDeclaration(Declaration declaration)
         {
-            super.writeTo(out);
-            getCallee().writeTo(out);
-            getName().writeTo(out);
+            this.declaration = declaration;
         }
 
         @Override
-        public void resolve(Resolver resolver) throws SyntaxException
+        public void print()
         {
-            resolver.resolve(getScope(), callee);
-            resolver.resolve(getScope(), name);
+
         }
 
         @Override
@@ -363,9 +369,12 @@ public abstract class Expression implements Resolvable
         private final Token function;
         private final List<Expression> arguments;
 
-        private FunctionCall(Scope scope, Token callee, Token name, List<Expression> arguments)
+        // set by semantic analysis to what the name refers to
+        private Function declaration;
+
+        FunctionCall(Token callee, Token name, List<Expression> arguments)
         {
-            super(scope);
+            super(Kind.FUNCTION_CALL);
             this.callee = callee;
             this.function = name;
             this.arguments = arguments;
@@ -391,40 +400,20 @@ public abstract class Expression implements Resolvable
             return arguments;
         }
 
-        @Override
-        public void print()
+        public Function getDeclaration()
         {
-
+            return declaration;
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
+        public void setDeclaration(Function declaration)
         {
-            super.writeTo(out);
-
-            getCallee().writeTo(out);
-            getFunction().writeTo(out);
-
-            out.writeShort(getArguments().size());
-            for (Expression arg : getArguments())
-            {
-                arg.writeTo(out);
-            }
+            this.declaration = declaration;
         }
 
         @Override
-        public void resolve(Resolver resolver) throws SyntaxException
+        public void print()
         {
-            if (isMethod())
-            {
-                resolver.resolve(getScope(), callee);
-            }
-            resolver.resolve(getScope(), function);
 
-            for (Expression arg : arguments)
-            {
-                resolver.resolve(arg);
-            }
         }
 
         @Override
@@ -442,9 +431,9 @@ public abstract class Expression implements Resolvable
     {
         private Expression inner;
 
-        private Group(Scope scope, Expression inner)
+        Group(Expression inner)
         {
-            super(scope);
+            super(Kind.GROUP);
             this.inner = inner;
         }
 
@@ -462,19 +451,6 @@ public abstract class Expression implements Resolvable
             }
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
-        {
-            super.writeTo(out);
-            inner.writeTo(out);
-        }
-
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(inner);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -482,63 +458,85 @@ public abstract class Expression implements Resolvable
         }
     }
 
+    // a view over a row of the arena, like Binary
     public static final class Literal extends Expression
     {
-        private Token token;
+        private final ExpressionArena arena;
+        private final int index;
+
+        Literal(ExpressionArena arena, int index)
+        {
+            super(Kind.LITERAL);
+            this.arena = arena;
+            this.index = index;
+        }
 
-        private Literal(Scope scope, Token token)
+        ExpressionArena getArena()
         {
-            super(scope);
-            this.token = token;
+            return arena;
         }
 
-        private Literal(Scope scope, ParserContext context)
+        int getIndex()
         {
-            super(scope);
-            this.token = context.getIterator().next();
+            return index;
         }
 
+        // made again on each call, as the arena keeps the token's fields rather than the token
         public Token getToken()
         {
-            return token;
+            return arena.getToken(index);
+        }
+
+        // set by semantic analysis when the token is a name
+        public Declaration getDeclaration()
+        {
+            return arena.getDeclaration(index);
+        }
+
+        public void setDeclaration(Declaration declaration)
+        {
+            arena.setDeclaration(index, declaration);
         }
 
         @Override
-        public void print()
+        public Type getType()
         {
-            System.out.print(token.getValue());
+            return resolved(arena.getLiteralType(index));
         }
 
         @Override
-        public void writeTo(DataOutputStream out) throws IOException
+        public void setType(Type type)
         {
-            super.writeTo(out);
-            token.writeTo(out);
+            arena.setLiteralType(index, type);
         }
 
         @Override
-        public void resolve(Resolver resolver) throws SyntaxException
+        public void print()
         {
-            resolver.resolve(getScope(), token);
+            System.out.print(getToken().getValue());
         }
 
         @Override
         public SourceFile.Position getStartPosition()
         {
-            return token.getPosition();
+            return getToken().getPosition();
         }
     }
 
     public static final class Instantiation extends Expression
     {
         private final Token className;
-        private final Map<Token, Expression> fields;
 
-        private Instantiation(Scope scope, Token className, Map<Token, Expression> fields)
+        // in source order; a literal only names a few fields, so two arrays beat a map
+        private final Token[] fieldNames;
+        private final Expression[] fieldValues;
+
+        Instantiation(Token className, Token[] fieldNames, Expression[] fieldValues)
         {
-            super(scope);
+            super(Kind.INSTANTIATION);
             this.className = className;
-            this.fields = fields;
+            this.fieldNames = fieldNames;
+            this.fieldValues = fieldValues;
         }
 
         public Token getClassName()
@@ -546,40 +544,25 @@ public abstract class Expression implements Resolvable
             return className;
         }
 
-        public Map<Token, Expression> getFields()
+        public int getFieldCount()
         {
-            return fields;
+            return fieldNames.length;
         }
 
-        @Override
-        public void print()
+        public Token getFieldName(int index)
         {
-
+            return fieldNames[index];
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
+        public Expression getFieldValue(int index)
         {
-            super.writeTo(out);
-            getClassName().writeTo(out);
-
-            out.writeShort(getFields().size());
-            for (Token token : getFields().keySet())
-            {
-                token.writeTo(out);
-                getFields().get(token).writeTo(out);
-            }
+            return fieldValues[index];
         }
 
         @Override
-        public void resolve(Resolver resolver) throws SyntaxException
+        public void print()
         {
-            resolver.resolve(getScope(), className);
 
-            for (Expression field : fields.values())
-            {
-                resolver.resolve(field);
-            }
         }
 
         @Override
@@ -594,9 +577,9 @@ public abstract class Expression implements Resolvable
         private final Operator operator;
         private final Expression right;
 
-        private Unary(Scope scope, Operator operator, Expression right)
+        Unary(Operator operator, Expression right)
         {
-            super(scope);
+            super(Kind.UNARY);
             this.operator = operator;
             this.right = right;
         }
@@ -627,24 +610,44 @@ public abstract class Expression implements Resolvable
             }
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
-        {
-            super.writeTo(out);
-            getOperator().writeTo(out);
-            getRight().writeTo(out);
-        }
-
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(right);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
             return right.getStartPosition();
         }
     }
+
+    // binding strength of each binary operator, 0 for operators that cannot join two expressions
+    private static final int[] precedence = new int[Operator.values().length];
+
+    static
+    {
+        precedence[Operator.EQ.ordinal()] = 1;
+        precedence[Operator.NEQ.ordinal()] = 1;
+
+        precedence[Operator.GT.ordinal()] = 2;
+        precedence[Operator.GEQ.ordinal()] = 2;
+        precedence[Operator.LT.ordinal()] = 2;
+        precedence[Operator.LEQ.ordinal()] = 2;
+        precedence[Operator.AND.ordinal()] = 2;
+        precedence[Operator.OR.ordinal()] = 2;
+
+        precedence[Operator.ADD.ordinal()] = 3;
+        precedence[Operator.SUBTRACT.ordinal()] = 3;
+
+        precedence[Operator.MULTIPLY.ordinal()] = 4;
+        precedence[Operator.DIVIDE.ordinal()] = 4;
+        precedence[Operator.MOD.ordinal()] = 4;
+    }
+
+    public enum Kind
+    {
+        BINARY,
+        FIELD_REFERENCE,
+        FUNCTION_CALL,
+        GROUP,
+        LITERAL,
+        INSTANTIATION,
+        UNARY,
+    }
 }
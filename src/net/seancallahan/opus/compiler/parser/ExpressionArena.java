@@ -0,0 +1,213 @@
+package net.seancallahan.opus.compiler.parser;
+
+import net.seancallahan.opus.compiler.LiteralKind;
+import net.seancallahan.opus.compiler.Operator;
+import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.compiler.TokenBuffer;
+import net.seancallahan.opus.compiler.TokenType;
+import net.seancallahan.opus.lang.Declaration;
+import net.seancallahan.opus.lang.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// binaries and literals make up most of a tree, so rather than an object each they are rows in these arrays, and
+// Expression.Binary and Expression.Literal are views over a row. Every other kind of expression is kept as it is.
+final class ExpressionArena
+{
+    // one per parsed body, so this stays small until a body turns out to need more
+    private static final int INITIAL_CAPACITY = 8;
+
+    // a reference to a node holds its row in the upper bits and which table the row is in below them
+    private static final int BINARY = 0;
+    private static final int LITERAL = 1;
+    private static final int OBJECT = 2;
+    private static final int TAG_BITS = 2;
+    private static final int TAG_MASK = (1 << TAG_BITS) - 1;
+    private static final int NULL = -1;
+
+    private static final Operator[] operators = Operator.values();
+    private static final TokenType[] tokenTypes = TokenType.values();
+    private static final LiteralKind[] literalKinds = LiteralKind.values();
+
+    private byte[] operator = new byte[INITIAL_CAPACITY];
+    private int[] left = new int[INITIAL_CAPACITY];
+    private int[] right = new int[INITIAL_CAPACITY];
+    private Type[] binaryType = new Type[INITIAL_CAPACITY];
+    private int binaries;
+
+    // a literal's token is copied rather than kept, since a streamed window reuses its buffer for the tokens after it
+    private TokenBuffer buffer;
+    private byte[] tokenType = new byte[INITIAL_CAPACITY];
+    private int[] start = new int[INITIAL_CAPACITY];
+    private int[] length = new int[INITIAL_CAPACITY];
+    private int[] symbol = new int[INITIAL_CAPACITY];
+    private byte[] literalKind = new byte[INITIAL_CAPACITY];
+    private long[] literal = new long[INITIAL_CAPACITY];
+    private Type[] literalType = new Type[INITIAL_CAPACITY];
+    private Declaration[] declaration = new Declaration[INITIAL_CAPACITY];
+    private int literals;
+
+    // tokens that can't be copied, those made up with no buffer or lexed from other source, with -1 - index as start
+    private final List<Token> tokens = new ArrayList<>();
+
+    private final List<Expression> objects = new ArrayList<>();
+
+    Expression.Binary binary(Expression left, Operator operator, Expression right)
+    {
+        if (binaries == this.operator.length)
+        {
+            int capacity = binaries << 1;
+            this.operator = Arrays.copyOf(this.operator, capacity);
+            this.left = Arrays.copyOf(this.left, capacity);
+            this.right = Arrays.copyOf(this.right, capacity);
+            binaryType = Arrays.copyOf(binaryType, capacity);
+        }
+
+        this.operator[binaries] = (byte)operator.ordinal();
+        this.left[binaries] = reference(left);
+        this.right[binaries] = reference(right);
+
+        return new Expression.Binary(this, binaries++);
+    }
+
+    Expression.Literal literal(Token token)
+    {
+        if (literals == tokenType.length)
+        {
+            int capacity = literals << 1;
+            tokenType = Arrays.copyOf(tokenType, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            symbol = Arrays.copyOf(symbol, capacity);
+            literalKind = Arrays.copyOf(literalKind, capacity);
+            literal = Arrays.copyOf(literal, capacity);
+            literalType = Arrays.copyOf(literalType, capacity);
+            declaration = Arrays.copyOf(declaration, capacity);
+        }
+
+        TokenBuffer from = token.getBuffer();
+        if (buffer == null && from != null)
+        {
+            buffer = from;
+        }
+
+        if (from == null || token.getOperator() != Operator.NONE
+            || from.getSource() != buffer.getSource() || from.getLines() != buffer.getLines())
+        {
+            start[literals] = -1 - tokens.size();
+            tokens.add(token);
+        }
+        else
+        {
+            tokenType[literals] = (byte)token.getType().ordinal();
+            start[literals] = token.getOffset();
+            length[literals] = token.getLength();
+            symbol[literals] = token.getSymbolId();
+            literalKind[literals] = (byte)token.getLiteralKind().ordinal();
+            literal[literals] = token.getLiteralBits();
+        }
+
+        return new Expression.Literal(this, literals++);
+    }
+
+    private int reference(Expression expression)
+    {
+        if (expression == null)
+        {
+            return NULL;
+        }
+        if (expression instanceof Expression.Binary && ((Expression.Binary) expression).getArena() == this)
+        {
+            return ((Expression.Binary) expression).getIndex() << TAG_BITS | BINARY;
+        }
+        if (expression instanceof Expression.Literal && ((Expression.Literal) expression).getArena() == this)
+        {
+            return ((Expression.Literal) expression).getIndex() << TAG_BITS | LITERAL;
+        }
+        objects.add(expression);
+        return (objects.size() - 1) << TAG_BITS | OBJECT;
+    }
+
+    private Expression node(int reference)
+    {
+        if (reference == NULL)
+        {
+            return null;
+        }
+
+        int index = reference >>> TAG_BITS;
+        switch (reference & TAG_MASK)
+        {
+            case BINARY:
+                return new Expression.Binary(this, index);
+            case LITERAL:
+                return new Expression.Literal(this, index);
+            default:
+                return objects.get(index);
+        }
+    }
+
+    Operator getOperator(int binary)
+    {
+        return operators[operator[binary]];
+    }
+
+    Expression getLeft(int binary)
+    {
+        return node(left[binary]);
+    }
+
+    Expression getRight(int binary)
+    {
+        return node(right[binary]);
+    }
+
+    // the binary on the left of this one, or -1 if the left operand is something else
+    int getLeftBinary(int binary)
+    {
+        int reference = left[binary];
+        return reference != NULL && (reference & TAG_MASK) == BINARY ? reference >>> TAG_BITS : -1;
+    }
+
+    Type getBinaryType(int binary)
+    {
+        return binaryType[binary];
+    }
+
+    void setBinaryType(int binary, Type type)
+    {
+        binaryType[binary] = type;
+    }
+
+    Token getToken(int literal)
+    {
+        if (start[literal] < 0)
+        {
+            return tokens.get(-1 - start[literal]);
+        }
+        return new Token(buffer, tokenTypes[tokenType[literal]], start[literal], length[literal], symbol[literal],
+            literalKinds[literalKind[literal]], this.literal[literal]);
+    }
+
+    Type getLiteralType(int literal)
+    {
+        return literalType[literal];
+    }
+
+    void setLiteralType(int literal, Type type)
+    {
+        literalType[literal] = type;
+    }
+
+    Declaration getDeclaration(int literal)
+    {
+        return declaration[literal];
+    }
+
+    void setDeclaration(int literal, Declaration declaration)
+    {
+        this.declaration[literal] = declaration;
+    }
+}
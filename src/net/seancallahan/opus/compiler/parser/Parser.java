@@ -1,37 +1,97 @@
 package net.seancallahan.opus.compiler.parser;
 
+import net.seancallahan.opus.compiler.CompilationFailedException;
 import net.seancallahan.opus.compiler.CompilerException;
 import net.seancallahan.opus.compiler.Function;
 import net.seancallahan.opus.compiler.Package;
 import net.seancallahan.opus.compiler.Scope;
 import net.seancallahan.opus.compiler.SourceFile;
+import net.seancallahan.opus.compiler.Symbol;
 import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.compiler.TokenBuffer;
+import net.seancallahan.opus.compiler.TokenStream;
 import net.seancallahan.opus.compiler.TokenType;
+import net.seancallahan.opus.compiler.UncheckedCompilerException;
 import net.seancallahan.opus.lang.Class;
 import net.seancallahan.opus.lang.Declaration;
 import net.seancallahan.opus.lang.Method;
 import net.seancallahan.opus.lang.Type;
 import net.seancallahan.opus.lang.Variable;
+import net.seancallahan.opus.util.PeekableIterator;
+import net.seancallahan.opus.util.PeekableListIterator;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Parser
 {
     private final ParserContext context;
 
-    private final Map<String, Declaration> declarations = new HashMap<>();
+    private final Map<Symbol, Declaration> declarations = new LinkedHashMap<>();
 
     private Package pkg;
 
     private final Scope global;
 
+    private final List<Token> tokens;
+    private boolean lazyBodies;
+    private ForkJoinPool pool;
+
+    private final List<Function> deferred = new ArrayList<>();
+
+    // bodies parsed in parallel report into this too, so it is sorted by position once they are all done
+    private final List<CompilerException> errors = Collections.synchronizedList(new ArrayList<>());
+
     public Parser(SourceFile file, List<Token> tokens, Scope global)
     {
-        this.context = new ParserContext(file, this, tokens);
+        this.context = new ParserContext(file, this, new PeekableListIterator<>(tokens), errors);
         this.global = global;
+        this.tokens = tokens;
+    }
+
+    public Parser(SourceFile file, PeekableIterator<Token> tokens, Scope global)
+    {
+        this.context = new ParserContext(file, this, tokens, errors);
+        this.global = global;
+        this.tokens = null;
+    }
+
+    public boolean isLazyBodies()
+    {
+        return lazyBodies;
+    }
+
+    // NOTE: a body is re-read later, from the token list when the parser was given one and otherwise lexed again
+    public void setLazyBodies(boolean lazyBodies)
+    {
+        this.lazyBodies = lazyBodies;
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    // NOTE: like lazy bodies, bodies are skipped while the signatures are parsed and re-read afterwards
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    public Package getPackage()
+    {
+        return pkg;
+    }
+
+    void setPackage(Package pkg)
+    {
+        this.pkg = pkg;
     }
 
     public Scope getGlobalScope()
@@ -39,13 +99,44 @@ public class Parser
         return global;
     }
 
+    public List<CompilerException> getErrors()
+    {
+        return errors;
+    }
+
+    // syntax errors don't stop the parse; everything that could be parsed is kept, and all of the errors are
+    // thrown together at the end
     public void parse() throws CompilerException
+    {
+        try
+        {
+            parseDeclarations();
+
+            if (pool != null && !lazyBodies)
+            {
+                parseBodies();
+            }
+        }
+        catch (UncheckedCompilerException e)
+        {
+            // the lexer can't carry on past a bad token, so this ends the parse
+            errors.add(e.getCause());
+        }
+
+        if (!errors.isEmpty())
+        {
+            errors.sort(CompilationFailedException.BY_POSITION);
+            throw new CompilationFailedException(errors);
+        }
+    }
+
+    private void parseDeclarations() throws CompilerException
     {
         context.expect(TokenType.PACKAGE);
 
         String pkgName = context.expect(TokenType.NAME).getValue();
-        // TODO: validate package name; do lookup
-        pkg = new Package(pkgName);
+        // TODO: validate package name
+        pkg = context.getSource().lookupPackage(pkgName);
 
         context.expect(TokenType.TERMINATOR);
 
@@ -53,31 +144,94 @@ public class Parser
         {
             Token next = context.getIterator().next();
 
-            switch (next.getType())
+            try
             {
-                case IMPORT:
-                    declaration(next);
-                    break;
-                case NAME:
-                    name(next);
-                    break;
-                case EOF:
-                    return;
+                switch (next.getType())
+                {
+                    case IMPORT:
+                        declaration(next);
+                        break;
+                    case NAME:
+                        name(next);
+                        break;
+                    case EOF:
+                        return;
+                }
             }
+            catch (CompilerException e)
+            {
+                context.report(e);
+
+                context.setState(ParserContext.State.NONE);
+                context.setCurrentBody(null);
+
+                skipToDeclaration();
+            }
+        }
+    }
+
+    private void skipToDeclaration()
+    {
+        PeekableIterator<Token> iterator = context.getIterator();
+
+        while (iterator.hasNext())
+        {
+            TokenType type = iterator.peek().getType();
+            if (type == TokenType.EOF || type == TokenType.IMPORT || startsDeclaration(iterator))
+            {
+                return;
+            }
+            iterator.skip(1);
+        }
+    }
+
+    static boolean startsDeclaration(PeekableIterator<Token> iterator)
+    {
+        // either "name ::" or "class.name ::"
+        if (!isType(iterator.peek(), TokenType.NAME))
+        {
+            return false;
+        }
+        if (isType(iterator.peek(1), TokenType.DECLARE_GLOBAL))
+        {
+            return true;
+        }
+        return isType(iterator.peek(1), TokenType.DOT)
+            && isType(iterator.peek(2), TokenType.NAME)
+            && isType(iterator.peek(3), TokenType.DECLARE_GLOBAL);
+    }
+
+    private static boolean isType(Token token, TokenType type)
+    {
+        return token != null && token.getType() == type;
+    }
+
+    private void parseBodies()
+    {
+        // every signature is known by now, and bodies only read the global scope, so they can be parsed in any order
+        pool.invoke(ForkJoinTask.adapt(() -> deferred.parallelStream().forEach(Function::parseBody)));
+
+        // report the first failure in source order, whichever thread hit it
+        for (Function function : deferred)
+        {
+            function.getBody();
         }
     }
 
-    private void addDeclaration(Declaration declaration) throws CompilerException
+    void addDeclaration(Declaration declaration) throws CompilerException
     {
         Token name = declaration.getName();
 
-        if (declarations.containsKey(name.getValue()))
+        if (declarations.containsKey(name.getSymbol()))
         {
             throw new CompilerException(String.format("Symbol %s already declared.", name));
         }
 
-        declarations.put(name.getValue(), declaration);
+        declarations.put(name.getSymbol(), declaration);
         global.add(declaration);
+
+        // NOTE: another file of the package may have the name too; that is reported once the whole package is analyzed
+        pkg.declare(declaration);
     }
 
     private void declaration(Token keyword) throws CompilerException
@@ -90,7 +244,7 @@ public class Parser
                 declaration = Statement.parseImport(context);
                 break;
             default:
-                throw new SyntaxException("invalid keyword");
+                throw new SyntaxException("invalid keyword", keyword);
         }
 
         addDeclaration(declaration);
@@ -100,7 +254,7 @@ public class Parser
     {
         if (context.getState() != ParserContext.State.NONE)
         {
-            throw new SyntaxException("cannot declare a new type from within a function or class");
+            throw new SyntaxException("cannot declare a new type from within a function or class", name);
         }
 
         if (context.has(TokenType.DECLARE_GLOBAL))
@@ -113,7 +267,7 @@ public class Parser
         }
         else
         {
-            throw new SyntaxException("invalid character after name");
+            throw new SyntaxException("invalid character after name", context.getIterator().peek());
         }
     }
 
@@ -139,7 +293,7 @@ public class Parser
                 break;
             default:
                 throw new SyntaxException(String.format("expected %s or %s got %s",
-                    TokenType.LEFT_PAREN, TokenType.LEFT_BRACE, next.getType()));
+                    TokenType.LEFT_PAREN, TokenType.LEFT_BRACE, next.getType()), next);
         }
 
         addDeclaration(declaration);
@@ -158,7 +312,7 @@ public class Parser
         addDeclaration(method);
     }
 
-    private static void parseFunction(ParserContext context, Function func) throws CompilerException {
+    private void parseFunction(ParserContext context, Function func) throws CompilerException {
         context.setState(ParserContext.State.FUNCTION);
 
         parseSignature(context, func.getParameters(), func.getReturns());
@@ -167,12 +321,16 @@ public class Parser
 
         for (Variable param : func.getParameters())
         {
-            context.getCurrentBody().getScope().put(param.getName().getValue(), param);
+            context.getCurrentBody().getScope().put(param.getName().getSymbol(), param);
         }
 
         context.expect(TokenType.LEFT_BRACE);
 
-        parseBody(context, func.getBody());
+        // a body that isn't closed is parsed in place, so that recovery goes the same way as when nothing is deferred
+        if (!(lazyBodies || pool != null) || !deferBody(func))
+        {
+            parseBody(context, func.getBody());
+        }
 
         context.expect(TokenType.RIGHT_BRACE);
 
@@ -230,11 +388,135 @@ public class Parser
         }
     }
 
-    private static void parseBody(ParserContext context, Body body) throws SyntaxException
+    // skips the body to be parsed later; false when it has no closing brace, and nothing has been skipped
+    private boolean deferBody(Function func)
     {
-        while (context.getIterator().peek().getType() != TokenType.RIGHT_BRACE)
+        PeekableIterator<Token> iterator = context.getIterator();
+
+        if (tokens != null)
+        {
+            int start = ((PeekableListIterator<Token>) iterator).getIndex();
+            int close = matchBrace(start);
+            if (close < 0)
+            {
+                return false;
+            }
+
+            // the range ends with the closing brace so that parseBody knows where to stop
+            func.defer(body -> parseDeferredBody(body, new PeekableListIterator<>(tokens, start, close + 1)));
+            iterator.skip(close - start);
+        }
+        else
+        {
+            // the tokens are streamed and not kept, so the body is lexed again from where it starts; looking for the
+            // end only peeks, so the body can still be parsed in place
+            int length = bodyLength(iterator);
+            if (length < 0)
+            {
+                return false;
+            }
+
+            int offset = iterator.peek().getOffset();
+            func.defer(body -> parseStreamedBody(body, offset));
+            iterator.skip(length);
+        }
+
+        deferred.add(func);
+        return true;
+    }
+
+    // the index of the brace that closes the body, or -1 if there is none
+    private int matchBrace(int from)
+    {
+        TokenBuffer buffer = tokens instanceof TokenBuffer ? (TokenBuffer) tokens : null;
+
+        int depth = 1;
+        for (int i = from; i < tokens.size(); i++)
+        {
+            // read the type straight from the buffer so skipped tokens never get a Token object
+            TokenType type = buffer != null ? buffer.getType(i) : tokens.get(i).getType();
+            if (type == TokenType.DECLARE_GLOBAL)
+            {
+                // never part of a body, so the body may end before it; only parsing it in place can tell
+                return -1;
+            }
+            if (type == TokenType.LEFT_BRACE)
+            {
+                depth++;
+            }
+            else if (type == TokenType.RIGHT_BRACE && --depth == 0)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // how many tokens come before the brace that closes the body, or -1 if there is none
+    private static int bodyLength(PeekableIterator<Token> iterator)
+    {
+        int depth = 1;
+        for (int i = 0; ; i++)
         {
-            body.getStatements().add(Statement.parse(context));
+            Token token = iterator.peek(i);
+            if (token == null || token.getType() == TokenType.EOF || token.getType() == TokenType.DECLARE_GLOBAL)
+            {
+                return -1;
+            }
+            if (token.getType() == TokenType.LEFT_BRACE)
+            {
+                depth++;
+            }
+            else if (token.getType() == TokenType.RIGHT_BRACE && --depth == 0)
+            {
+                return i;
+            }
+        }
+    }
+
+    private void parseStreamedBody(Body body, int offset) throws CompilerException
+    {
+        try
+        {
+            // parseBody stops at the closing brace, so no more of the file than the body is lexed
+            parseDeferredBody(body, new TokenStream(context.getSource().getLexer().from(offset)));
+        }
+        catch (UncheckedCompilerException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private void parseDeferredBody(Body body, PeekableIterator<Token> iterator) throws CompilerException
+    {
+        // a body parsed on request comes after parse() has returned, so its errors are thrown rather than kept
+        List<CompilerException> bodyErrors = lazyBodies ? new ArrayList<>() : errors;
+
+        ParserContext bodyContext = new ParserContext(context.getSource(), this, iterator, bodyErrors);
+        bodyContext.setState(ParserContext.State.FUNCTION);
+        bodyContext.setCurrentBody(body);
+
+        parseBody(bodyContext, body);
+
+        if (lazyBodies && !bodyErrors.isEmpty())
+        {
+            throw new CompilationFailedException(bodyErrors);
+        }
+    }
+
+    private static void parseBody(ParserContext context, Body body)
+    {
+        // a declaration can't be in a body, so one means the body was never closed, which parseFunction reports
+        while (!context.matches(TokenType.RIGHT_BRACE, TokenType.EOF) && !context.atDeclaration())
+        {
+            try
+            {
+                body.getStatements().add(Statement.parse(context));
+            }
+            catch (SyntaxException e)
+            {
+                context.recover(e);
+            }
         }
     }
 
@@ -275,18 +557,18 @@ public class Parser
         switch (next.getType())
         {
             case NAME:
-                return new Type(next);
+                return Type.of(next);
             case LEFT_BRACKET:
                 context.expect(TokenType.RIGHT_BRACKET);
                 Token name = context.expect(TokenType.NAME);
                 // TODO: fix arrays
-                return new Type("");
+                return Type.of("");
             default:
                 throw new SyntaxException(String.format("expecting type got %s", next), next);
         }
     }
 
-    public Map<String, Declaration> getDeclarations()
+    public Map<Symbol, Declaration> getDeclarations()
     {
         return declarations;
     }
@@ -1,5 +1,6 @@
 package net.seancallahan.opus.compiler.parser;
 
+import net.seancallahan.opus.compiler.CompilerException;
 import net.seancallahan.opus.compiler.Operator;
 import net.seancallahan.opus.compiler.SourceFile;
 import net.seancallahan.opus.compiler.Token;
@@ -13,15 +14,20 @@ public class ParserContext
     private final SourceFile source;
     private final Parser parser;
     private final PeekableIterator<Token> iterator;
+    private final List<CompilerException> errors;
 
     private State state = State.NONE;
     private Body currentBody;
 
-    public ParserContext(SourceFile file, Parser parser, List<Token> tokens)
+    // each deferred body has its own context, so bodies parsed in parallel never share an arena
+    private ExpressionArena arena;
+
+    public ParserContext(SourceFile file, Parser parser, PeekableIterator<Token> tokens, List<CompilerException> errors)
     {
         this.source = file;
         this.parser = parser;
-        this.iterator = new PeekableIterator<>(tokens);
+        this.iterator = tokens;
+        this.errors = errors;
     }
 
     public SourceFile getSource()
@@ -59,16 +65,78 @@ public class ParserContext
         return iterator;
     }
 
+    ExpressionArena getArena()
+    {
+        if (arena == null)
+        {
+            arena = new ExpressionArena();
+        }
+        return arena;
+    }
+
+    public List<CompilerException> getErrors()
+    {
+        return errors;
+    }
+
+    public void report(CompilerException error)
+    {
+        errors.add(error);
+    }
+
     public Token expect(TokenType type) throws SyntaxException
     {
-        Token token = getIterator().next();
+        // a token that doesn't match is left in place so that recovery can still see it
+        Token token = getIterator().peek();
         if (token.getType() != type)
         {
             throw new SyntaxException(String.format("unexpected %s, expecting %s", token.getType(), type), token);
         }
+        getIterator().skip(1);
         return token;
     }
 
+    // the next tokens start a top level declaration, which ends any body that hasn't been closed
+    public boolean atDeclaration()
+    {
+        return Parser.startsDeclaration(iterator);
+    }
+
+    // panic mode: report the error and drop the rest of the broken statement, up to and including its
+    // terminator or block, but never the brace that closes the enclosing body or the declaration after it
+    public void recover(SyntaxException error)
+    {
+        report(error);
+
+        int depth = 0;
+        while (iterator.hasNext())
+        {
+            TokenType type = iterator.peek().getType();
+            if (type == TokenType.EOF || (depth == 0 && (type == TokenType.RIGHT_BRACE || atDeclaration())))
+            {
+                return;
+            }
+
+            iterator.skip(1);
+
+            if (type == TokenType.LEFT_BRACE)
+            {
+                depth++;
+            }
+            else if (type == TokenType.RIGHT_BRACE)
+            {
+                if (--depth == 0)
+                {
+                    return;
+                }
+            }
+            else if (type == TokenType.TERMINATOR && depth == 0)
+            {
+                return;
+            }
+        }
+    }
+
     public boolean matches(Operator... operators)
     {
         Token next = getIterator().peek();
@@ -4,22 +4,25 @@ import net.seancallahan.opus.compiler.Scope;
 import net.seancallahan.opus.compiler.SourceFile;
 import net.seancallahan.opus.compiler.Token;
 import net.seancallahan.opus.compiler.TokenType;
-import net.seancallahan.opus.compiler.semantics.Resolvable;
-import net.seancallahan.opus.compiler.semantics.Resolver;
 import net.seancallahan.opus.lang.Declaration;
 import net.seancallahan.opus.lang.Type;
 import net.seancallahan.opus.lang.Variable;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
-
-public abstract class Statement implements Resolvable
+public abstract sealed class Statement
 {
     private final Body parent;
+    private final Kind kind;
 
-    public Statement(Body parent)
+    private Statement(Body parent, Kind kind)
     {
         this.parent = parent;
+        this.kind = kind;
+    }
+
+    // passes switch on this rather than testing each node class in turn
+    public final Kind getKind()
+    {
+        return kind;
     }
 
     public Body getParent()
@@ -172,9 +175,9 @@ public abstract class Statement implements Resolvable
             case DEFINE:
                 return parseVariableDefine(context, name);
             case DECLARE_GLOBAL:
-                throw new UnsupportedOperationException("cannot declare a global type from within a function");
+                throw new SyntaxException("cannot declare a global type from within a function", next);
             default:
-                throw new UnsupportedOperationException();
+                throw new SyntaxException(String.format("unexpected %s after name", next.getType()), next);
         }
     }
 
@@ -188,12 +191,34 @@ public abstract class Statement implements Resolvable
 
         context.setCurrentBody(body);
 
-        while (!context.has(TokenType.RIGHT_BRACE))
+        try
         {
-            body.getStatements().add(Statement.parse(context));
-        }
+            while (!context.has(TokenType.RIGHT_BRACE))
+            {
+                if (context.matches(TokenType.EOF))
+                {
+                    throw new SyntaxException("unexpected end of file, expecting }", context.getIterator().peek());
+                }
+                if (context.atDeclaration())
+                {
+                    // the function this is in wasn't closed either, which it reports
+                    break;
+                }
 
-        context.setCurrentBody(parent);
+                try
+                {
+                    body.getStatements().add(Statement.parse(context));
+                }
+                catch (SyntaxException e)
+                {
+                    context.recover(e);
+                }
+            }
+        }
+        finally
+        {
+            context.setCurrentBody(parent);
+        }
 
         return body;
     }
@@ -210,28 +235,20 @@ public abstract class Statement implements Resolvable
         {
             return null;
         }
-        return scope.get(name.getValue());
-    }
-
-    public void writeTo(DataOutputStream out) throws IOException
-    {
-        out.writeUTF(getClass().getSimpleName());
-    }
-
-    @Override
-    public void resolve(Resolver resolver) throws SyntaxException
-    {
-
+        return scope.get(name.getSymbol());
     }
 
-    public static class Assignment extends Statement
+    public static final class Assignment extends Statement
     {
         private Token name;
         private Expression expression;
 
-        private Assignment(Body parent, Token name, Expression expression)
+        // set by semantic analysis to the variable being assigned
+        private Declaration declaration;
+
+        Assignment(Body parent, Token name, Expression expression)
         {
-            super(parent);
+            super(parent, Kind.ASSIGNMENT);
             this.name = name;
             this.expression = expression;
         }
@@ -246,19 +263,14 @@ public abstract class Statement implements Resolvable
             return expression;
         }
 
-        @Override
-        public void writeTo(DataOutputStream out) throws IOException
+        public Declaration getDeclaration()
         {
-            super.writeTo(out);
-            name.writeTo(out);
-            expression.writeTo(out);
+            return declaration;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
+        public void setDeclaration(Declaration declaration)
         {
-            resolver.resolve(getParent().getScope(), name);
-            resolver.resolve(expression);
+            this.declaration = declaration;
         }
 
         @Override
@@ -268,15 +280,15 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class Constant extends Statement implements Declaration
+    public static final class Constant extends Statement implements Declaration
     {
         private final Token name;
         private final Type type;
         private final Expression value;
 
-        private Constant(Body parent, Token name, Type type, Expression value)
+        Constant(Body parent, Token name, Type type, Expression value)
         {
-            super(parent);
+            super(parent, Kind.CONSTANT);
             this.name = name;
             this.type = type;
             this.value = value;
@@ -298,13 +310,6 @@ public abstract class Statement implements Resolvable
             return name;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(getParent().getScope(), name);
-            resolver.resolve(value);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -312,13 +317,13 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class Return extends Statement
+    public static final class Return extends Statement
     {
         private Expression expression;
 
-        private Return(Body parent, Expression expression)
+        Return(Body parent, Expression expression)
         {
-            super(parent);
+            super(parent, Kind.RETURN);
             this.expression = expression;
         }
 
@@ -327,12 +332,6 @@ public abstract class Statement implements Resolvable
             return expression;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(expression);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -340,13 +339,13 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class Import extends Statement implements Declaration
+    public static final class Import extends Statement implements Declaration
     {
         private final Token path;
 
-        private Import(Body parent, Token path)
+        Import(Body parent, Token path)
         {
-            super(parent);
+            super(parent, Kind.IMPORT);
             this.path = path;
         }
 
@@ -368,29 +367,29 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class For extends Statement
+    public static final class For extends Statement
     {
         private Assignment index;
         private Expression condition;
         private Statement counter;
         private Body body;
 
-        private For(Body parent, Body body)
+        For(Body parent, Body body)
         {
-            super(parent);
+            super(parent, Kind.FOR);
             this.body = body;
         }
 
-        private For(Body parent, Expression condition, Body body)
+        For(Body parent, Expression condition, Body body)
         {
-            super(parent);
+            super(parent, Kind.FOR);
             this.condition = condition;
             this.body = body;
         }
 
-        protected For(Body parent, Assignment index, Expression condition, Statement counter, Body body)
+        For(Body parent, Assignment index, Expression condition, Statement counter, Body body)
         {
-            super(parent);
+            super(parent, Kind.FOR);
             this.index = index;
             this.condition = condition;
             this.counter = counter;
@@ -417,24 +416,6 @@ public abstract class Statement implements Resolvable
             return body;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            if (index != null)
-            {
-                index.resolve(resolver);
-            }
-            if (condition != null)
-            {
-                condition.resolve(resolver);
-            }
-            if (counter != null)
-            {
-                counter.resolve(resolver);
-            }
-            // TODO: body
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -455,14 +436,14 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class If extends Statement
+    public static final class If extends Statement
     {
         private Expression condition;
         private Body body;
 
-        private If(Body parent, Expression condition, Body body)
+        If(Body parent, Expression condition, Body body)
         {
-            super(parent);
+            super(parent, Kind.IF);
             this.condition = condition;
             this.body = body;
         }
@@ -477,13 +458,6 @@ public abstract class Statement implements Resolvable
             return body;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(condition);
-            // TODO: body
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -491,21 +465,21 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class VariableDeclaration extends Statement implements Declaration
+    public static final class VariableDeclaration extends Statement implements Declaration
     {
         private final Variable variable;
         private final Expression expression;
 
-        private VariableDeclaration(Body parent, Token name, Type type)
+        VariableDeclaration(Body parent, Token name, Type type)
         {
-            super(parent);
+            super(parent, Kind.VARIABLE_DECLARATION);
             this.variable = new Variable(name, type);
             this.expression = null;
         }
 
-        private VariableDeclaration(Body parent, Token name, Expression expression)
+        VariableDeclaration(Body parent, Token name, Expression expression)
         {
-            super(parent);
+            super(parent, Kind.VARIABLE_DECLARATION);
             this.variable = new Variable(name);
             this.expression = expression;
         }
@@ -526,19 +500,6 @@ public abstract class Statement implements Resolvable
             return expression;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            if (expression != null)
-            {
-                Object value = resolver.resolve(expression);
-                if (value instanceof Type)
-                {
-                    variable.setType((Type)value);
-                }
-            }
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
@@ -546,13 +507,13 @@ public abstract class Statement implements Resolvable
         }
     }
 
-    public static class SimpleExpression extends Statement
+    public static final class SimpleExpression extends Statement
     {
         private final Expression expression;
 
         public SimpleExpression(Body parent, Expression expression)
         {
-            super(parent);
+            super(parent, Kind.SIMPLE_EXPRESSION);
             this.expression = expression;
         }
 
@@ -561,16 +522,22 @@ public abstract class Statement implements Resolvable
             return expression;
         }
 
-        @Override
-        public void resolve(Resolver resolver) throws SyntaxException
-        {
-            resolver.resolve(expression);
-        }
-
         @Override
         public SourceFile.Position getStartPosition()
         {
             return null;
         }
     }
+
+    public enum Kind
+    {
+        ASSIGNMENT,
+        CONSTANT,
+        RETURN,
+        IMPORT,
+        FOR,
+        IF,
+        VARIABLE_DECLARATION,
+        SIMPLE_EXPRESSION,
+    }
 }
@@ -1,6 +1,7 @@
 package net.seancallahan.opus.compiler.parser;
 
 import net.seancallahan.opus.compiler.CompilerException;
+import net.seancallahan.opus.compiler.SourceFile;
 import net.seancallahan.opus.compiler.Token;
 
 public class SyntaxException extends CompilerException
@@ -14,4 +15,9 @@ public class SyntaxException extends CompilerException
     {
         super(message, at.getPosition());
     }
+
+    public SyntaxException(String message, SourceFile.Position position)
+    {
+        super(message, position);
+    }
 }
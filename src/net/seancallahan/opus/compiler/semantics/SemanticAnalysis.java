@@ -0,0 +1,633 @@
+package net.seancallahan.opus.compiler.semantics;
+
+import net.seancallahan.opus.compiler.CompilationFailedException;
+import net.seancallahan.opus.compiler.CompilerException;
+import net.seancallahan.opus.compiler.Function;
+import net.seancallahan.opus.compiler.Package;
+import net.seancallahan.opus.compiler.Scope;
+import net.seancallahan.opus.compiler.SourceFile;
+import net.seancallahan.opus.compiler.Symbol;
+import net.seancallahan.opus.compiler.Token;
+import net.seancallahan.opus.compiler.TokenType;
+import net.seancallahan.opus.compiler.UncheckedCompilerException;
+import net.seancallahan.opus.compiler.parser.Body;
+import net.seancallahan.opus.compiler.parser.Expression;
+import net.seancallahan.opus.compiler.parser.Parser;
+import net.seancallahan.opus.compiler.parser.Statement;
+import net.seancallahan.opus.compiler.parser.SyntaxException;
+import net.seancallahan.opus.lang.Class;
+import net.seancallahan.opus.lang.Declaration;
+import net.seancallahan.opus.lang.Method;
+import net.seancallahan.opus.lang.Type;
+import net.seancallahan.opus.lang.Variable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+// Resolves every name to its declaration and works out the type of every expression in one walk
+// over each body. The declaration a name refers to is kept on the node, and every primitive local its
+// slot, so the passes after this one never look a name up again. A name that is not declared in the
+// file itself is looked up in the package, so one pass over a package resolves its files against each other.
+public class SemanticAnalysis
+{
+    private final Package pkg;
+    private final List<Parser> files;
+
+    // the file of the function being analyzed
+    private final Parser parser;
+
+    private final List<CompilerException> errors = new ArrayList<>();
+
+    private boolean checkTypes = true;
+    private ForkJoinPool pool;
+
+    // the next free local variable slot in the function being analyzed
+    private int nextSlot;
+
+    // the block being analyzed, of which only the members declared before the current statement can be used
+    private Scope block;
+    private int visible;
+
+    public SemanticAnalysis(Parser parser)
+    {
+        this.pkg = parser.getPackage();
+        this.files = List.of(parser);
+        this.parser = null;
+    }
+
+    // the given files of a package, which have all been parsed; the rest of the package can be referred to but is not analyzed again
+    public SemanticAnalysis(Package pkg, List<SourceFile> files)
+    {
+        this.pkg = pkg;
+        this.files = parsers(files);
+        this.parser = null;
+    }
+
+    // one function's share of the work, with errors and slots of its own
+    private SemanticAnalysis(SemanticAnalysis global, Parser parser)
+    {
+        this.pkg = global.pkg;
+        this.files = List.of(parser);
+        this.parser = parser;
+        this.checkTypes = global.checkTypes;
+    }
+
+    private static List<Parser> parsers(List<SourceFile> files)
+    {
+        List<Parser> parsers = new ArrayList<>(files.size());
+        for (SourceFile file : files)
+        {
+            parsers.add(file.getParser());
+        }
+        return parsers;
+    }
+
+    public List<CompilerException> getErrors()
+    {
+        return errors;
+    }
+
+    // a broken tree mostly gives follow-on type errors, so one with syntax errors only has its names resolved
+    public void setCheckTypes(boolean checkTypes)
+    {
+        this.checkTypes = checkTypes;
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    // analyze function bodies in parallel on the given pool
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    // every statement is analyzed even after one fails, and the errors are thrown together at the end
+    public void perform() throws CompilerException
+    {
+        if (pkg != null)
+        {
+            claim();
+        }
+
+        // methods are given to their classes first, so that once the bodies start nothing global changes
+        List<Function> functions = new ArrayList<>();
+        List<SemanticAnalysis> bodies = new ArrayList<>();
+
+        for (Parser file : files)
+        {
+            for (Declaration declaration : file.getDeclarations().values())
+            {
+                if (!(declaration instanceof Function))
+                {
+                    continue;
+                }
+
+                SemanticAnalysis body = new SemanticAnalysis(this, file);
+                if (declaration instanceof Method)
+                {
+                    body.attach((Method)declaration);
+                }
+
+                functions.add((Function)declaration);
+                bodies.add(body);
+            }
+        }
+
+        if (pool != null && functions.size() > 1)
+        {
+            pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, functions.size()).parallel()
+                .forEach(i -> bodies.get(i).analyzeFunction(functions.get(i)))));
+        }
+        else
+        {
+            for (int i = 0; i < functions.size(); i++)
+            {
+                bodies.get(i).analyzeFunction(functions.get(i));
+            }
+        }
+
+        // merged in declaration order, so the errors come out the same however the bodies were scheduled
+        for (SemanticAnalysis body : bodies)
+        {
+            errors.addAll(body.errors);
+        }
+
+        if (!errors.isEmpty())
+        {
+            throw new CompilationFailedException(errors);
+        }
+    }
+
+    // the files declared into the package as they were parsed, in whatever order they finished, so a name
+    // declared in more than one of them is settled here instead: the file that comes first keeps it
+    private void claim()
+    {
+        Map<Symbol, Declaration> claimed = new HashMap<>();
+
+        for (Parser file : files)
+        {
+            for (Declaration declaration : file.getDeclarations().values())
+            {
+                if (declaration instanceof Statement.Import)
+                {
+                    continue;
+                }
+
+                Token name = declaration.getName();
+
+                Declaration owner = claimed.putIfAbsent(name.getSymbol(), declaration);
+                if (owner == null)
+                {
+                    owner = pkg.get(name.getSymbol());
+                    if (owner == null || owner == declaration || isDeclaredIn(files, owner))
+                    {
+                        pkg.getDeclarations().put(name.getSymbol(), declaration);
+                        continue;
+                    }
+                }
+
+                errors.add(new SyntaxException(String.format("'%s' is already declared in package '%s'", name.getValue(), pkg.getName()), name));
+            }
+        }
+    }
+
+    private static boolean isDeclaredIn(List<Parser> files, Declaration declaration)
+    {
+        Symbol name = declaration.getName().getSymbol();
+        for (Parser file : files)
+        {
+            if (file.getDeclarations().get(name) == declaration)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void attach(Method method)
+    {
+        Token parentName = method.getParentName();
+
+        Declaration declaration = global(parentName.getSymbol());
+        if (declaration == null)
+        {
+            errors.add(new SyntaxException(String.format("no class exists with the name '%s'", parentName.getValue()), parentName));
+        }
+        else if (!(declaration instanceof Class))
+        {
+            errors.add(new SyntaxException(String.format("cannot give method to non-class '%s'", parentName.getValue()), parentName));
+        }
+        else
+        {
+            Class clazz = (Class)declaration;
+
+            method.setParent(clazz);
+            clazz.getMethods().add(method);
+        }
+    }
+
+    private void analyzeFunction(Function function)
+    {
+        Body body;
+        try
+        {
+            body = function.getBody();
+        }
+        catch (UncheckedCompilerException e)
+        {
+            // a lazily parsed body failed when it was first used
+            errors.add(e.getCause());
+            return;
+        }
+
+        // NOTE: slots are numbered the way the jvm does, a long or double takes two, and a method's this takes the first
+        nextSlot = function instanceof Method && !((Method)function).isStatic() ? 1 : 0;
+        for (Variable param : function.getParameters())
+        {
+            allocate(param);
+        }
+
+        analyzeBody(body);
+    }
+
+    private void allocate(Variable variable)
+    {
+        Type type = variable.getType();
+        if (type == null || !type.isPrimitive())
+        {
+            return;
+        }
+
+        variable.setSlot(nextSlot);
+        nextSlot += type.getStackSize();
+    }
+
+    private void analyzeBody(Body body)
+    {
+        Scope outerBlock = block;
+        int outerVisible = visible;
+
+        // the parameters come before the block's own declarations, which are added in the order of their statements
+        block = body.getScope();
+        visible = block.size();
+        for (Statement statement : body.getStatements())
+        {
+            if (statement != null && statement.getKind() == Statement.Kind.VARIABLE_DECLARATION)
+            {
+                int index = indexOf((Statement.VariableDeclaration)statement);
+                if (index >= 0)
+                {
+                    visible = index;
+                }
+                break;
+            }
+        }
+
+        for (Statement statement : body.getStatements())
+        {
+            if (statement == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                analyzeStatement(body.getScope(), statement);
+            }
+            catch (SyntaxException e)
+            {
+                errors.add(e);
+            }
+
+            if (statement.getKind() == Statement.Kind.VARIABLE_DECLARATION)
+            {
+                // even when it failed, so the statements after it aren't also told it is used before its declaration
+                visible = Math.max(visible, indexOf((Statement.VariableDeclaration)statement) + 1);
+            }
+        }
+
+        block = outerBlock;
+        visible = outerVisible;
+    }
+
+    private int indexOf(Statement.VariableDeclaration declaration)
+    {
+        return block.indexOf(declaration.getVariable().getName().getSymbol());
+    }
+
+    private void analyzeStatement(Scope scope, Statement statement) throws SyntaxException
+    {
+        switch (statement.getKind())
+        {
+            case ASSIGNMENT:
+                Statement.Assignment assignment = (Statement.Assignment)statement;
+                assignment.setDeclaration(lookup(scope, assignment.getName()));
+                analyze(scope, assignment.getExpression());
+                break;
+            case CONSTANT:
+                analyze(scope, ((Statement.Constant)statement).getValue());
+                break;
+            case RETURN:
+                analyze(scope, ((Statement.Return)statement).getExpression());
+                break;
+            case FOR:
+                Statement.For loop = (Statement.For)statement;
+                if (loop.getIndex() != null)
+                {
+                    analyzeStatement(scope, loop.getIndex());
+                }
+                analyze(scope, loop.getCondition());
+                if (loop.getCounter() != null)
+                {
+                    analyzeStatement(scope, loop.getCounter());
+                }
+                // TODO: body
+                break;
+            case IF:
+                analyze(scope, ((Statement.If)statement).getCondition());
+                // TODO: body
+                break;
+            case VARIABLE_DECLARATION:
+                Statement.VariableDeclaration declaration = (Statement.VariableDeclaration)statement;
+                Type type = analyze(scope, declaration.getExpression());
+                if (type != null)
+                {
+                    declaration.getVariable().setType(type);
+                }
+                allocate(declaration.getVariable());
+                break;
+            case SIMPLE_EXPRESSION:
+                analyze(scope, ((Statement.SimpleExpression)statement).getExpression());
+                break;
+            default:
+                break;
+        }
+    }
+
+    // binds the names in an expression and gives back its type, or null if it is unknown or types are not being checked
+    private Type analyze(Scope scope, Expression expression) throws SyntaxException
+    {
+        if (expression == null)
+        {
+            return null;
+        }
+
+        Type type;
+
+        switch (expression.getKind())
+        {
+            case LITERAL:
+                type = analyzeLiteral(scope, (Expression.Literal)expression);
+                break;
+            case UNARY:
+                type = analyze(scope, ((Expression.Unary)expression).getRight());
+                break;
+            case GROUP:
+                type = analyze(scope, ((Expression.Group)expression).getInner());
+                break;
+            case FUNCTION_CALL:
+                type = analyzeCall(scope, (Expression.FunctionCall)expression);
+                break;
+            case BINARY:
+                // sets the type of every binary down the chain as it goes
+                return analyzeBinaryChain(scope, (Expression.Binary)expression);
+            case FIELD_REFERENCE:
+                Expression.FieldReference reference = (Expression.FieldReference)expression;
+                reference.setDeclaration(lookup(scope, reference.getCallee()));
+                lookup(scope, reference.getName());
+                return unsupported(expression);
+            case INSTANTIATION:
+                Expression.Instantiation instantiation = (Expression.Instantiation)expression;
+                lookup(scope, instantiation.getClassName());
+                for (int i = 0; i < instantiation.getFieldCount(); i++)
+                {
+                    analyze(scope, instantiation.getFieldValue(i));
+                }
+                return unsupported(expression);
+            default:
+                return unsupported(expression);
+        }
+
+        if (type != null)
+        {
+            expression.setType(type);
+        }
+        return type;
+    }
+
+    // the rest of the file can still be checked, so this is reported like any other error rather than thrown
+    private Type unsupported(Expression expression)
+    {
+        if (checkTypes)
+        {
+            errors.add(new SyntaxException("cannot check the type of this expression yet", expression.getStartPosition()));
+        }
+        return null;
+    }
+
+    private Type analyzeLiteral(Scope scope, Expression.Literal literal) throws SyntaxException
+    {
+        Token token = literal.getToken();
+
+        if (token.getType() == TokenType.NAME || token.getType() == TokenType.THIS)
+        {
+            Declaration declaration = lookup(scope, token);
+            literal.setDeclaration(declaration);
+
+            return checkTypes ? getType(declaration) : null;
+        }
+
+        if (!checkTypes)
+        {
+            return null;
+        }
+
+        if (token.getType() == TokenType.TRUE || token.getType() == TokenType.FALSE)
+        {
+            return Type.BOOL;
+        }
+
+        if (token.getLiteralKind().isNumber())
+        {
+            return token.getLiteralKind().getType();
+        }
+
+        return Type.STRING;
+    }
+
+    private Type getType(Declaration declaration) throws SyntaxException
+    {
+        if (declaration instanceof Function)
+        {
+            return Type.of(declaration.getName().getValue());
+        }
+        if (declaration instanceof Variable)
+        {
+            return ((Variable)declaration).getType();
+        }
+        if (declaration instanceof Statement.Constant)
+        {
+            return ((Statement.Constant)declaration).getType();
+        }
+        if (declaration instanceof Class || declaration instanceof Statement.Import)
+        {
+            // reported rather than thrown, like an expression that can't be checked yet
+            errors.add(new SyntaxException("cannot use a type as a value", declaration.getName()));
+            return null;
+        }
+        if (!(declaration instanceof Statement.VariableDeclaration))
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        // NOTE: null when its own statement failed; that was reported already, so it is not looked at again
+        return ((Statement.VariableDeclaration) declaration).getVariable().getType();
+    }
+
+    private Type analyzeCall(Scope scope, Expression.FunctionCall call) throws SyntaxException
+    {
+        if (call.isMethod())
+        {
+            lookup(scope, call.getCallee());
+        }
+
+        Declaration declaration = lookup(scope, call.getFunction());
+        if (!(declaration instanceof Function))
+        {
+            throw new SyntaxException(String.format("'%s' is not a function", call.getFunction().getValue()), call.getFunction());
+        }
+
+        Function function = (Function)declaration;
+        call.setDeclaration(function);
+
+        if (!checkTypes)
+        {
+            for (Expression argument : call.getArguments())
+            {
+                analyze(scope, argument);
+            }
+            return null;
+        }
+
+        if (function.getParameters().size() != call.getArguments().size())
+        {
+            throw new SyntaxException("invalid argument count to function " + function.getName().getValue(), call.getFunction());
+        }
+
+        for (int i = 0; i < function.getParameters().size(); i++)
+        {
+            Variable param = function.getParameters().get(i);
+            Expression argument = call.getArguments().get(i);
+            Type type = analyze(scope, argument);
+            if (type != null && param.getType() != type)
+            {
+                throw new SyntaxException("wrong argument type", argument.getStartPosition());
+            }
+        }
+
+        // TODO: support multi returns
+        return function.getReturns().get(0).getType();
+    }
+
+    private Type analyzeBinaryChain(Scope scope, Expression.Binary expression) throws SyntaxException
+    {
+        // walk the chain bottom up so that its length never turns into stack depth
+        List<Expression.Binary> spine = expression.getLeftSpine();
+
+        Type type = analyze(scope, spine.get(0).getLeft());
+        for (Expression.Binary binary : spine)
+        {
+            Type right = analyze(scope, binary.getRight());
+            if (checkTypes)
+            {
+                type = checkBinaryType(binary, type, right);
+                if (type != null)
+                {
+                    binary.setType(type);
+                }
+            }
+        }
+        return type;
+    }
+
+    private static Type checkBinaryType(Expression.Binary binary, Type left, Type right) throws SyntaxException
+    {
+        // an operand whose type is unknown has had its error reported, so there is nothing more to say
+        if (left == null || right == null)
+        {
+            return null;
+        }
+
+        switch (binary.getOperator())
+        {
+            case AND:
+            case OR:
+                if (!(left == Type.BOOL && right == Type.BOOL))
+                {
+                    throw new SyntaxException("can only make comparisons with two boolean expressions", binary.getStartPosition());
+                }
+                return left;
+            case EQ:
+            case NEQ:
+            case LT:
+            case GT:
+            case LEQ:
+            case GEQ:
+                if (left != right)
+                {
+                    throw new SyntaxException("incompatible types in expression", binary.getStartPosition());
+                }
+                return Type.BOOL;
+            default:
+                if (left != right)
+                {
+                    throw new SyntaxException("incompatible types in expression", binary.getStartPosition());
+                }
+                return left;
+        }
+    }
+
+    private Declaration lookup(Scope scope, Token token) throws SyntaxException
+    {
+        if (!(token.getType() == TokenType.NAME || token.getType() == TokenType.THIS))
+        {
+            return null;
+        }
+
+        Declaration declaration = scope == block ? scope.get(token.getSymbol(), visible) : scope.get(token.getSymbol());
+        if (declaration == null && scope.get(token.getSymbol()) != null)
+        {
+            throw new SyntaxException(String.format("'%s' is used before its declaration", token.getValue()), token);
+        }
+
+        if (declaration == null)
+        {
+            declaration = global(token.getSymbol());
+        }
+
+        if (declaration == null)
+        {
+            throw new SyntaxException(String.format("'%s' is not defined", token.getValue()), token);
+        }
+        return declaration;
+    }
+
+    // the file's own declarations come first, so a file still sees its own even when another file has taken the name
+    private Declaration global(Symbol name)
+    {
+        Declaration declaration = parser.getDeclarations().get(name);
+        if (declaration == null && pkg != null)
+        {
+            declaration = pkg.get(name);
+        }
+        return declaration;
+    }
+}
@@ -2,10 +2,14 @@ package net.seancallahan.opus.lang;
 
 import net.seancallahan.opus.compiler.Function;
 import net.seancallahan.opus.compiler.Scope;
+import net.seancallahan.opus.compiler.Symbol;
+import net.seancallahan.opus.compiler.SymbolTable;
 import net.seancallahan.opus.compiler.Token;
 
 public final class Method extends Function implements Member
 {
+    private static final Symbol THIS = SymbolTable.intern("this");
+
     private Class parent;
 
     private final Token parentName;
@@ -17,7 +21,7 @@ public final class Method extends Function implements Member
         this.parentName = parentName;
         this._static = _static;
 
-        getScope().put("this", null);
+        getScope().put(THIS, null);
     }
 
     public Method(Function function, Class parent, boolean _static)
@@ -41,7 +45,7 @@ public final class Method extends Function implements Member
     public void setParent(Class parent)
     {
         this.parent = parent;
-        getScope().put("this", parent);
+        getScope().put(THIS, parent);
     }
 
     public Token getParentName()
@@ -2,25 +2,52 @@ package net.seancallahan.opus.lang;
 
 import net.seancallahan.opus.compiler.Token;
 
-public class Type
-{
-    private final String name;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-    private final boolean primitive;
+public final class Type
+{
     private static final String[] primitives = new String[]
     {
         "bool", "string", /*"u8", "u16", "u32", "u64",*/ // TODO: bring back unsigned
         "s8", "s16", "s32", "s64", "f32", "f64",
     };
 
-    public Type(Token name)
+    // types are immutable, so every use of a name shares one instance
+    private static final Map<String, Type> types = new ConcurrentHashMap<>();
+
+    public static final Type BOOL = of("bool");
+    public static final Type STRING = of("string");
+    public static final Type S32 = of("s32");
+    public static final Type S64 = of("s64");
+    public static final Type F32 = of("f32");
+    public static final Type F64 = of("f64");
+
+    private final String name;
+    private final Kind kind;
+    private final boolean primitive;
+    private final String descriptor;
+
+    public static Type of(Token name)
     {
-        this(name.getValue());
+        return of(name.getValue());
     }
 
-    public Type(String name)
+    public static Type of(String name)
+    {
+        Type type = types.get(name);
+        if (type != null)
+        {
+            return type;
+        }
+        return types.computeIfAbsent(name, Type::new);
+    }
+
+    private Type(String name)
     {
         this.name = name;
+        this.kind = kindOf(name);
+        this.descriptor = descriptorOf(name);
 
         boolean primitive = false;
 
@@ -41,6 +68,17 @@ public class Type
         return name;
     }
 
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    // the jvm field descriptor, such as I for s32 or [J for []s64
+    public String getDescriptor()
+    {
+        return descriptor;
+    }
+
     @Override
     public String toString()
     {
@@ -54,21 +92,90 @@ public class Type
 
     public int getStackSize()
     {
-        if (isPrimitive() && name.endsWith("64"))
+        return kind.getStackSize();
+    }
+
+    // NOTE: equals and hashCode are left to Object, since there is only ever one instance per name
+
+    private static Kind kindOf(String name)
+    {
+        switch (name)
         {
-            return 2;
+            case "bool":
+                return Kind.BOOL;
+            case "u8":
+            case "s8":
+            case "u16":
+            case "s16":
+            case "u32":
+            case "s32":
+                return Kind.INT;
+            case "u64":
+            case "s64":
+                return Kind.LONG;
+            case "f32":
+                return Kind.FLOAT;
+            case "f64":
+                return Kind.DOUBLE;
+            default:
+                return Kind.REFERENCE;
         }
-        return 1;
     }
 
-    @Override
-    public boolean equals(Object obj)
+    private static String descriptorOf(String name)
+    {
+        if (name.startsWith("[]"))
+        {
+            return "[" + descriptorOf(name.substring(2));
+        }
+
+        switch (name)
+        {
+            case "bool":
+                return "Z";
+            case "u8":
+            case "s8":
+                return "B";
+            case "u16":
+            case "s16":
+                return "S";
+            case "u32":
+            case "s32":
+                return "I";
+            case "u64":
+            case "s64":
+                return "J";
+            case "f32":
+                return "F";
+            case "f64":
+                return "D";
+            default:
+                // assume reference
+                return "L" + name + ";";
+        }
+    }
+
+    // how the jvm holds a value of the type; every integer narrower than 64 bits is an int to it
+    public enum Kind
     {
-        if (!(obj instanceof Type))
+        BOOL(1),
+        INT(1),
+        LONG(2),
+        FLOAT(1),
+        DOUBLE(2),
+        REFERENCE(1),
+        ;
+
+        private final int stackSize;
+
+        Kind(int stackSize)
         {
-            return false;
+            this.stackSize = stackSize;
         }
 
-        return ((Type)obj).name.equals(name);
+        public int getStackSize()
+        {
+            return stackSize;
+        }
     }
 }
@@ -7,6 +7,9 @@ public final class Variable implements Declaration
     private final Token name;
     private Type type;
 
+    // the local variable slot it was given by semantic analysis, or -1 if it has none
+    private int slot = -1;
+
     public Variable(Token name)
     {
         this(name, null);
@@ -38,6 +41,16 @@ public final class Variable implements Declaration
         this.type = type;
     }
 
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    public void setSlot(int slot)
+    {
+        this.slot = slot;
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,311 @@
+package net.seancallahan.opus.tools.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Writes packages of valid Opus source in whatever size and shape is asked for. Everything it emits
+// gets through the parser, reference resolution and type analysis: locals and parameters are all s32,
+// conditions are comparisons joined with || and &&, and calls only go to functions in the same file.
+public class CorpusGenerator
+{
+    private static final String[] arithmetic = { "+", "-", "*" };
+    private static final String[] comparisons = { "<", ">", "==", "<=", ">=" };
+    private static final String[] logical = { "||", "&&" };
+
+    private final Shape shape;
+
+    private Random random;
+    private StringBuilder out;
+    private int functionBase;
+
+    private final List<String> locals = new ArrayList<>();
+    private int nextLocal;
+
+    public CorpusGenerator(Shape shape)
+    {
+        this.shape = shape;
+    }
+
+    public Shape getShape()
+    {
+        return shape;
+    }
+
+    public List<File> write(File directory, String pkg) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+
+        List<File> files = new ArrayList<>();
+        long lines = 0;
+
+        for (int i = 0; shape.getLines() > 0 ? lines < shape.getLines() : i < shape.getFiles(); i++)
+        {
+            String source = generate(pkg, i);
+            lines += countLines(source, 0);
+
+            File file = new File(directory, pkg + i + ".opus");
+            Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    // each file has a seed of its own and numbers its declarations from its index, so files can be
+    // generated in any order and still never clash with each other
+    public String generate(String pkg, int file)
+    {
+        begin(pkg, file);
+
+        for (int i = 0; i < shape.getClasses(); i++)
+        {
+            addClass(file * shape.getClasses() + i);
+        }
+
+        return out.toString();
+    }
+
+    // a single file that keeps taking on classes until it is at least the given number of lines long
+    public String generateLines(String pkg, int lines)
+    {
+        begin(pkg, 0);
+
+        int total = countLines(out, 0);
+        int counted = out.length();
+        for (int i = 0; total < lines; i++)
+        {
+            addClass(i);
+            total += countLines(out, counted);
+            counted = out.length();
+        }
+
+        return out.toString();
+    }
+
+    private void begin(String pkg, int file)
+    {
+        random = new Random(shape.getSeed() * 31 + file);
+        out = new StringBuilder();
+        functionBase = file * shape.getFunctions();
+
+        out.append("package ").append(pkg).append(";\n\n");
+
+        for (int i = 0; i < shape.getFunctions(); i++)
+        {
+            function(null, "f" + (functionBase + i));
+        }
+    }
+
+    private void addClass(int index)
+    {
+        String name = "Shape" + index;
+
+        out.append(name).append(" :: {}\n\n");
+
+        // method names share the package's namespace with everything else, so they are numbered package wide too
+        for (int j = 0; j < shape.getMethods(); j++)
+        {
+            function(name, "M" + (index * shape.getMethods() + j));
+        }
+    }
+
+    private void function(String parent, String name)
+    {
+        locals.clear();
+        locals.add("a");
+        locals.add("b");
+        nextLocal = 0;
+
+        if (parent != null)
+        {
+            out.append(parent).append('.');
+        }
+        out.append(name).append(" :: (a s32, b s32) -> s32 {\n");
+
+        body(1, 0);
+
+        indent(1).append("return ");
+        expression(shape.getDepth());
+        out.append(";\n}\n\n");
+    }
+
+    private void body(int indent, int nesting)
+    {
+        int scope = locals.size();
+
+        for (int i = 0; i < shape.getStatements(); i++)
+        {
+            statement(indent, nesting);
+        }
+
+        // whatever was declared in here goes out of scope with the block
+        locals.subList(scope, locals.size()).clear();
+    }
+
+    private void statement(int indent, int nesting)
+    {
+        int choice = random.nextInt(nesting < shape.getNesting() ? 6 : 4);
+        switch (choice)
+        {
+            case 0:
+            case 1:
+                define(indent);
+                break;
+            case 2:
+                assign(indent, local());
+                break;
+            case 3:
+                if (shape.getFunctions() > 0)
+                {
+                    indent(indent);
+                    call(shape.getDepth() - 1);
+                    out.append(";\n");
+                }
+                else
+                {
+                    define(indent);
+                }
+                break;
+            case 4:
+                indent(indent).append("if ");
+                condition();
+                out.append(" {\n");
+                body(indent + 1, nesting + 1);
+                indent(indent).append("}\n");
+                break;
+            default:
+                // counts a fresh local up to a bound so the loop has a shape a real one would
+                String counter = define(indent);
+                indent(indent).append("for ").append(counter).append(" < ").append(random.nextInt(100)).append(" {\n");
+                indent(indent + 1).append(counter).append(" = ").append(counter).append(" + 1;\n");
+                body(indent + 1, nesting + 1);
+                indent(indent).append("}\n");
+                break;
+        }
+    }
+
+    private String define(int indent)
+    {
+        String name = "v" + nextLocal++;
+
+        indent(indent).append(name).append(" := ");
+        expression(shape.getDepth());
+        out.append(";\n");
+
+        locals.add(name);
+        return name;
+    }
+
+    private void assign(int indent, String name)
+    {
+        indent(indent).append(name).append(" = ");
+        expression(shape.getDepth());
+        out.append(";\n");
+    }
+
+    private void condition()
+    {
+        int terms = 1 + random.nextInt(3);
+        for (int i = 0; i < terms; i++)
+        {
+            if (i > 0)
+            {
+                out.append(' ').append(pick(logical)).append(' ');
+            }
+            out.append('(');
+            expression(1);
+            out.append(' ').append(pick(comparisons)).append(' ');
+            expression(1);
+            out.append(')');
+        }
+    }
+
+    private void expression(int depth)
+    {
+        if (depth <= 0)
+        {
+            operand();
+            return;
+        }
+
+        switch (random.nextInt(shape.getFunctions() > 0 ? 5 : 4))
+        {
+            case 0:
+                operand();
+                break;
+            case 1:
+                out.append('(');
+                expression(depth - 1);
+                out.append(' ').append(pick(arithmetic)).append(' ');
+                expression(depth - 1);
+                out.append(')');
+                break;
+            case 4:
+                call(depth - 1);
+                break;
+            default:
+                expression(depth - 1);
+                out.append(' ').append(pick(arithmetic)).append(' ');
+                expression(depth - 1);
+                break;
+        }
+    }
+
+    private void call(int depth)
+    {
+        out.append('f').append(functionBase + random.nextInt(shape.getFunctions())).append('(');
+        expression(depth);
+        out.append(", ");
+        expression(depth);
+        out.append(')');
+    }
+
+    private void operand()
+    {
+        if (random.nextInt(3) == 0)
+        {
+            out.append(random.nextInt(1000));
+        }
+        else
+        {
+            out.append(local());
+        }
+    }
+
+    private String local()
+    {
+        return locals.get(random.nextInt(locals.size()));
+    }
+
+    private StringBuilder indent(int indent)
+    {
+        for (int i = 0; i < indent; i++)
+        {
+            out.append("    ");
+        }
+        return out;
+    }
+
+    private String pick(String[] options)
+    {
+        return options[random.nextInt(options.length)];
+    }
+
+    private static int countLines(CharSequence source, int from)
+    {
+        int lines = 0;
+        for (int i = from; i < source.length(); i++)
+        {
+            if (source.charAt(i) == '\n')
+            {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,114 @@
+package net.seancallahan.opus.tools.corpus;
+
+public class Shape
+{
+    private int files = 1;
+    private int lines = 0;
+
+    private int classes = 10;
+    private int methods = 2;
+    private int functions = 2;
+
+    private int statements = 6;
+    private int depth = 3;
+    private int nesting = 2;
+
+    private long seed = 1;
+
+    // how many files to write; a line target, when set, takes over from this
+    public int getFiles()
+    {
+        return files;
+    }
+
+    public void setFiles(int files)
+    {
+        this.files = files;
+    }
+
+    public int getLines()
+    {
+        return lines;
+    }
+
+    public void setLines(int lines)
+    {
+        this.lines = lines;
+    }
+
+    // classes per file
+    public int getClasses()
+    {
+        return classes;
+    }
+
+    public void setClasses(int classes)
+    {
+        this.classes = classes;
+    }
+
+    // methods per class
+    public int getMethods()
+    {
+        return methods;
+    }
+
+    public void setMethods(int methods)
+    {
+        this.methods = methods;
+    }
+
+    // top level functions per file
+    public int getFunctions()
+    {
+        return functions;
+    }
+
+    public void setFunctions(int functions)
+    {
+        this.functions = functions;
+    }
+
+    // statements per body, not counting the return and whatever is nested in an if or for
+    public int getStatements()
+    {
+        return statements;
+    }
+
+    public void setStatements(int statements)
+    {
+        this.statements = statements;
+    }
+
+    // how deep an expression tree may get
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public void setDepth(int depth)
+    {
+        this.depth = depth;
+    }
+
+    // how deep if and for blocks may nest
+    public int getNesting()
+    {
+        return nesting;
+    }
+
+    public void setNesting(int nesting)
+    {
+        this.nesting = nesting;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+}
@@ -2,52 +2,46 @@ package net.seancallahan.opus.tools.opus;
 
 import net.seancallahan.opus.compiler.Compiler;
 import net.seancallahan.opus.compiler.SourceFile;
-import net.seancallahan.opus.lang.Declaration;
-import net.seancallahan.opus.lang.Method;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CommandAst implements Command
 {
     @Override
     public void run(String[] args)
     {
+        List<File> files = new ArrayList<>(args.length);
         for (String arg : args)
         {
-            Compiler compiler = new Compiler();
-
-            try
-            {
-                File file = new File(arg);
-                SourceFile source = compiler.compile(file, false);
-
-                File astFile = new File(file.getParent() + File.pathSeparator + file.getName() + ".ast");
-                astFile.delete();
-                astFile.createNewFile();
+            files.add(new File(arg));
+        }
 
-                FileOutputStream fileOut = new FileOutputStream(astFile);
-                DataOutputStream out = new DataOutputStream(fileOut);
+        // checked together, since the files of a package refer to each other
+        Compiler compiler = new Compiler();
 
-                for (Declaration declaration : source.getParser().getDeclarations().values())
+        try
+        {
+            for (SourceFile source : compiler.compile(files, false))
+            {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(source.getAstFile()))))
                 {
-                    if (declaration instanceof Method)
-                    {
-                        Method method = (Method)declaration;
-                        method.getBody().writeTo(out);
-                    }
+                    source.save(out);
                 }
-            } catch (Exception e)
-            {
-                e.printStackTrace();
             }
+        } catch (Exception e)
+        {
+            e.printStackTrace();
         }
     }
 
     @Override
     public String getDescription()
     {
-        return "generates an .ast file";
+        return "generates .ast files, which builds read instead of parsing sources that haven't changed since";
     }
 }
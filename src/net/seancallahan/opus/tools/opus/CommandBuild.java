@@ -1,37 +1,53 @@
 package net.seancallahan.opus.tools.opus;
 
+import net.seancallahan.opus.compiler.CompilationFailedException;
 import net.seancallahan.opus.compiler.Compiler;
+import net.seancallahan.opus.compiler.CompilerException;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CommandBuild implements Command
 {
     @Override
     public void run(String[] args)
     {
+        List<File> files = new ArrayList<>(args.length);
         for (String arg : args)
         {
-            System.out.printf("build %s ", arg);
+            files.add(new File(arg));
+        }
 
-            long start = System.nanoTime();
+        System.out.printf("build %s ", String.join(" ", args));
 
-            try
-            {
-                Compiler compiler = new Compiler();
-                compiler.compile(new File(arg), true);
-            }
-            catch (Exception e)
+        long start = System.nanoTime();
+
+        try
+        {
+            Compiler compiler = new Compiler();
+            compiler.compile(files, true);
+        }
+        catch (CompilationFailedException e)
+        {
+            System.out.printf("failed with %d error%s\n", e.getErrors().size(), e.getErrors().size() == 1 ? "" : "s");
+            for (CompilerException error : e.getErrors())
             {
-                System.out.print("failed\n");
-                e.printStackTrace();
-                System.exit(1);
+                System.out.println(error.getMessage());
             }
+            System.exit(1);
+        }
+        catch (Exception e)
+        {
+            System.out.print("failed\n");
+            e.printStackTrace();
+            System.exit(1);
+        }
 
-            long duration = System.nanoTime() - start;
-            double ms = duration / 1e6;
+        long duration = System.nanoTime() - start;
+        double ms = duration / 1e6;
 
-            System.out.printf("success %.1fms\n", ms);
-        }
+        System.out.printf("success %.1fms\n", ms);
     }
 
     @Override
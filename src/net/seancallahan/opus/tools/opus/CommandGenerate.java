@@ -0,0 +1,68 @@
+package net.seancallahan.opus.tools.opus;
+
+import net.seancallahan.opus.tools.corpus.CorpusGenerator;
+import net.seancallahan.opus.tools.corpus.Shape;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class CommandGenerate implements Command
+{
+    @Override
+    public void run(String[] args)
+    {
+        Shape shape = new Shape();
+        String pkg = "corpus";
+        String directory = null;
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-package": pkg = args[++i]; break;
+                    case "-files": shape.setFiles(Integer.parseInt(args[++i])); break;
+                    case "-lines": shape.setLines(Integer.parseInt(args[++i])); break;
+                    case "-classes": shape.setClasses(Integer.parseInt(args[++i])); break;
+                    case "-methods": shape.setMethods(Integer.parseInt(args[++i])); break;
+                    case "-functions": shape.setFunctions(Integer.parseInt(args[++i])); break;
+                    case "-statements": shape.setStatements(Integer.parseInt(args[++i])); break;
+                    case "-depth": shape.setDepth(Integer.parseInt(args[++i])); break;
+                    case "-nesting": shape.setNesting(Integer.parseInt(args[++i])); break;
+                    case "-seed": shape.setSeed(Long.parseLong(args[++i])); break;
+                    default: directory = args[i]; break;
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | NumberFormatException e)
+        {
+            System.out.println("invalid option: " + e.getMessage());
+            System.exit(1);
+        }
+
+        if (directory == null)
+        {
+            System.out.println("must supply an output directory");
+            System.exit(1);
+        }
+
+        try
+        {
+            List<File> files = new CorpusGenerator(shape).write(new File(directory), pkg);
+            System.out.printf("generated %d file%s in %s\n", files.size(), files.size() == 1 ? "" : "s", directory);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return "generates a package of source files for scaling tests";
+    }
+}
@@ -36,6 +36,7 @@ public class Opus
         commands = Map.of(
             "ast", new CommandAst(),
             "build", new CommandBuild(),
+            "generate", new CommandGenerate(),
             "help", new CommandHelp(),
             "run", new CommandRun(),
             "version", new CommandVersion()
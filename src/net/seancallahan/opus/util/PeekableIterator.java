@@ -1,55 +1,13 @@
 package net.seancallahan.opus.util;
 
 import java.util.Iterator;
-import java.util.List;
 
-public class PeekableIterator<T> implements Iterator<T>
+public interface PeekableIterator<T> extends Iterator<T>
 {
-    private final List<T> source;
+    T peek();
 
-    private int next = 0;
-
-    public PeekableIterator(List<T> source)
-    {
-        this.source = source;
-    }
-
-    @Override
-    public boolean hasNext()
-    {
-        return next < source.size();
-    }
-
-    @Override
-    public T next()
-    {
-        T value = peek();
-        next++;
-        return value;
-    }
-
-    public T peek()
-    {
-        if (!hasNext())
-        {
-            return null;
-        }
-        return source.get(next);
-    }
-
-    public void skip(int n)
-    {
-        if (n < 0)
-        {
-            throw new IllegalArgumentException("can only skip a positive amount");
-        }
-        next += n;
-    }
-
-    @Override
-    public void remove()
-    {
-        source.remove(next);
-    }
+    // looks past the next element without consuming anything; peek(0) is the same as peek()
+    T peek(int ahead);
 
+    void skip(int n);
 }
@@ -0,0 +1,81 @@
+package net.seancallahan.opus.util;
+
+import java.util.List;
+
+public class PeekableListIterator<T> implements PeekableIterator<T>
+{
+    private final List<T> source;
+    private final int end;
+
+    private int next;
+
+    private T peeked;
+    private int peekedIndex = -1;
+
+    public PeekableListIterator(List<T> source)
+    {
+        this(source, 0, -1);
+    }
+
+    public PeekableListIterator(List<T> source, int from, int to)
+    {
+        this.source = source;
+        this.next = from;
+        this.end = to;
+    }
+
+    public int getIndex()
+    {
+        return next;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return next < (end < 0 ? source.size() : end);
+    }
+
+    @Override
+    public T next()
+    {
+        T value = peek();
+        next++;
+        return value;
+    }
+
+    @Override
+    public T peek()
+    {
+        if (!hasNext())
+        {
+            return null;
+        }
+        if (peekedIndex != next)
+        {
+            peeked = source.get(next);
+            peekedIndex = next;
+        }
+        return peeked;
+    }
+
+    @Override
+    public T peek(int ahead)
+    {
+        int index = next + ahead;
+        if (index >= (end < 0 ? source.size() : end))
+        {
+            return null;
+        }
+        return source.get(index);
+    }
+
+    @Override
+    public void skip(int n)
+    {
+        if (n < 0)
+        {
+            throw new IllegalArgumentException("can only skip a positive amount");
+        }
+        next += n;
+    }
+}
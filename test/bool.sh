@@ -0,0 +1,40 @@
+#!/bin/sh
+# Builds bool.opus and runs its functions, which have to give back the literal they return.
+# usage: test/bool.sh <classpath of the compiled compiler>
+set -e
+
+classes=${1:?usage: $0 <classpath of the compiled compiler>}
+dir=$(mktemp -d)
+trap 'rm -rf "$dir" "$dir":*.class' EXIT
+
+cp "$(dirname "$0")/bool.opus" "$dir"
+java -cp "$classes" net.seancallahan.opus.tools.opus.Opus build "$dir/bool.opus"
+
+# NOTE: class files are currently written next to the source directory, joined to its name with a path separator
+mkdir -p "$dir/classes/test"
+cp "$dir":bool_static.class "$dir/classes/test/bool_static.class"
+
+cat > "$dir/Run.java" <<'JAVA'
+public class Run
+{
+    public static void main(String[] args) throws Exception
+    {
+        Class<?> clazz = Class.forName("test.bool_static");
+        for (String name : new String[] { "yes", "no" })
+        {
+            java.lang.reflect.Method method = clazz.getDeclaredMethod(name);
+            method.setAccessible(true);
+            System.out.println(name + " " + method.invoke(null));
+        }
+    }
+}
+JAVA
+
+result=$(java -cp "$dir/classes" "$dir/Run.java")
+if [ "$result" != "$(printf 'yes true\nno false')" ]
+then
+    echo "bool literals came back wrong:"
+    echo "$result"
+    exit 1
+fi
+echo "ok"
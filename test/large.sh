@@ -0,0 +1,26 @@
+#!/bin/sh
+# Builds a function that returns a sum of 200000 terms, far more code than a method can hold, and checks that it is
+# reported as an error naming the function rather than stopping the build.
+# usage: test/large.sh <classpath of the compiled compiler>
+set -e
+
+classes=${1:?usage: $0 <classpath of the compiled compiler>}
+dir=$(mktemp -d)
+trap 'rm -rf "$dir" "$dir":*.class' EXIT
+
+# generated rather than kept in test/, as it is a few hundred kilobytes
+awk 'BEGIN {
+    printf "package main;\n\nsum :: () -> s32 {\n    return 1";
+    for (i = 1; i < 200000; i++) printf " + 1";
+    printf ";\n}\n";
+}' > "$dir/large.opus"
+
+output=$(java -cp "$classes" net.seancallahan.opus.tools.opus.Opus build "$dir/large.opus" 2>&1) || true
+
+if ! echo "$output" | grep -q "function 'sum' is too large" || echo "$output" | grep -q Exception
+then
+    echo "expected an error naming sum"
+    echo "$output"
+    exit 1
+fi
+echo "ok"
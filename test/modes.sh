@@ -0,0 +1,72 @@
+#!/bin/sh
+# Parses the samples sequentially, in parallel from a token list, and in parallel from a stream of tokens, which have to
+# report the same errors; unterminated.opus and recovery.opus are broken on purpose.
+# usage: test/modes.sh <classpath of the compiled compiler>
+set -e
+
+classes=${1:?usage: $0 <classpath of the compiled compiler>}
+dir=$(mktemp -d)
+trap 'rm -rf "$dir"' EXIT
+
+cat > "$dir/Modes.java" <<'JAVA'
+import net.seancallahan.opus.compiler.CompilationFailedException;
+import net.seancallahan.opus.compiler.CompilerException;
+import net.seancallahan.opus.compiler.SourceFile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class Modes
+{
+    public static void main(String[] args) throws Exception
+    {
+        boolean same = true;
+        for (String path : args)
+        {
+            List<String> sequential = errors(new File(path), false, false);
+            List<String> eager = errors(new File(path), true, true);
+            List<String> stream = errors(new File(path), false, true);
+
+            if (!sequential.equals(eager) || !sequential.equals(stream))
+            {
+                same = false;
+                System.out.println(path + ":\n  sequential " + sequential + "\n  eager " + eager + "\n  stream " + stream);
+            }
+        }
+        System.exit(same ? 0 : 1);
+    }
+
+    private static List<String> errors(File file, boolean lex, boolean parallel) throws Exception
+    {
+        SourceFile source = new SourceFile(file);
+        if (lex)
+        {
+            source.lex();
+        }
+        if (parallel)
+        {
+            source.setPool(ForkJoinPool.commonPool());
+        }
+
+        List<String> errors = new ArrayList<>();
+        try
+        {
+            source.parse();
+        }
+        catch (CompilationFailedException e)
+        {
+            for (CompilerException error : e.getErrors())
+            {
+                errors.add(error.getMessage());
+            }
+        }
+        return errors;
+    }
+}
+JAVA
+
+cd "$(dirname "$0")"
+java -cp "$classes" "$dir/Modes.java" unterminated.opus recovery.opus basic.opus function.opus bool.opus v2.opus
+echo "ok"
@@ -0,0 +1,22 @@
+#!/bin/sh
+# Builds basic.opus and checks with javap that Basic.Foo keeps its locals out of slot 0, which holds this.
+# usage: test/slots.sh <classpath of the compiled compiler>
+set -e
+
+classes=${1:?usage: $0 <classpath of the compiled compiler>}
+dir=$(mktemp -d)
+trap 'rm -rf "$dir" "$dir":*.class' EXIT
+
+cp "$(dirname "$0")/basic.opus" "$dir"
+java -cp "$classes" net.seancallahan.opus.tools.opus.Opus build "$dir/basic.opus"
+
+# NOTE: class files are currently written next to the source directory, joined to its name with a path separator
+code=$(javap -c "$dir":basic_Basic.class)
+
+if echo "$code" | grep -Eq '[ail]store_0|[ail]store 0$'
+then
+    echo "Basic.Foo overwrites this in slot 0"
+    echo "$code"
+    exit 1
+fi
+echo "ok"
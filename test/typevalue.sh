@@ -0,0 +1,20 @@
+#!/bin/sh
+# Builds typevalue.opus, which uses a class and an import as values, and checks that both are reported as errors
+# rather than stopping the build.
+# usage: test/typevalue.sh <classpath of the compiled compiler>
+set -e
+
+classes=${1:?usage: $0 <classpath of the compiled compiler>}
+dir=$(mktemp -d)
+trap 'rm -rf "$dir" "$dir":*.class' EXIT
+
+cp "$(dirname "$0")/typevalue.opus" "$dir"
+output=$(java -cp "$classes" net.seancallahan.opus.tools.opus.Opus build "$dir/typevalue.opus" 2>&1) || true
+
+if [ "$(echo "$output" | grep -c 'cannot use a type as a value')" -ne 2 ] || echo "$output" | grep -q Exception
+then
+    echo "expected two errors for the type used as a value"
+    echo "$output"
+    exit 1
+fi
+echo "ok"